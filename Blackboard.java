@@ -0,0 +1,102 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicReference;
+
+// The blackboard of one pack of BlackboardWolf: the chase the pack is busy
+// with, plus a bounded history of recent chases. Sightings are immutable
+// and the active chase sits behind an AtomicReference, so reading it is a
+// single volatile load without any lock, and finding it is O(1) however
+// long the game runs. A chase ends by itself once its deadline has passed;
+// nobody has to sweep the board for that.
+public class Blackboard implements Snapshottable {
+
+    private final AtomicReference<BlackboardWolf.PreySighting> active = new AtomicReference<>();
+
+    // Ring of the last chases that were started, for inspection. Entries past
+    // their deadline are dropped whenever a new chase comes in.
+    private final BlackboardWolf.PreySighting[] recent;
+    private int newest = -1;
+
+    public Blackboard(int capacity) {
+        recent = new BlackboardWolf.PreySighting[Math.max(1, capacity)];
+    }
+
+    // The chase going on at time now, or null if there is none
+    public BlackboardWolf.PreySighting getActiveChase(long now) {
+        BlackboardWolf.PreySighting chase = active.get();
+        return chase != null && now <= chase.chaseDeadline ? chase : null;
+    }
+
+    // Starts the given chase unless another one is still going on at time now.
+    // Returns whether the caller's chase became the active one.
+    public boolean startChase(BlackboardWolf.PreySighting chase, long now) {
+        BlackboardWolf.PreySighting current;
+        do {
+            current = active.get();
+            if (current != null && now <= current.chaseDeadline)
+                return false;
+        } while (!active.compareAndSet(current, chase));
+        remember(chase, now);
+        return true;
+    }
+
+    // Replaces the active chase by a newer sighting of the same prey, unless
+    // somebody else changed the chase in the meantime
+    public boolean updateChase(BlackboardWolf.PreySighting expected, BlackboardWolf.PreySighting update) {
+        return active.compareAndSet(expected, update);
+    }
+
+    private synchronized void remember(BlackboardWolf.PreySighting chase, long now) {
+        for (int i = 0; i < recent.length; i++) {
+            if (recent[i] != null && now > recent[i].chaseDeadline)
+                recent[i] = null;
+        }
+        newest = (newest + 1) % recent.length;
+        recent[newest] = chase;
+    }
+
+    @Override
+    public synchronized void save(DataOutput out) throws IOException {
+        write(out, active.get());
+        out.writeInt(recent.length);
+        out.writeInt(newest);
+        for (BlackboardWolf.PreySighting s : recent)
+            write(out, s);
+    }
+
+    @Override
+    public synchronized void restore(DataInput in) throws IOException {
+        active.set(read(in));
+        if (in.readInt() != recent.length)
+            throw new IOException("blackboard of another capacity");
+        newest = in.readInt();
+        for (int i = 0; i < recent.length; i++)
+            recent[i] = read(in);
+    }
+
+    private static void write(DataOutput out, BlackboardWolf.PreySighting s) throws IOException {
+        out.writeBoolean(s != null);
+        if (s != null) {
+            out.writeInt(s.row);
+            out.writeInt(s.col);
+            out.writeLong(s.time);
+            out.writeLong(s.chaseDeadline);
+        }
+    }
+
+    private static BlackboardWolf.PreySighting read(DataInput in) throws IOException {
+        if (!in.readBoolean())
+            return null;
+        return new BlackboardWolf.PreySighting(in.readInt(), in.readInt(), in.readLong(), in.readLong());
+    }
+
+    // Number of remembered chases that are still going on at time now
+    public synchronized int size(long now) {
+        int n = 0;
+        for (BlackboardWolf.PreySighting s : recent)
+            if (s != null && now <= s.chaseDeadline)
+                n++;
+        return n;
+    }
+}
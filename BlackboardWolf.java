@@ -1,35 +1,57 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.List;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Comparator;
 
-public class BlackboardWolf implements Wolf {
+public class BlackboardWolf implements Wolf, PackAware, Snapshottable {
 
     // -------------------------------------------
-    //  A "prey chase record" on the blackboard
+    //  A "prey chase record" on the blackboard.
+    //  Records never change once posted: a newer
+    //  sighting replaces the record as a whole.
+    //  The chase is on until the deadline passes.
+    //  Positions are absolute board coordinates,
+    //  so every wolf can use them as they are.
     // -------------------------------------------
     static class PreySighting {
-        int relRow;
-        int relCol;
-        long time;      // e.g. the time (tick) of the latest known location
-        boolean isChased;
-        long chaseDeadline; // When does the chase end?
-
-        public PreySighting(int r, int c, long t, boolean chased, long deadline) {
-            this.relRow         = r;
-            this.relCol         = c;
+        final int row;
+        final int col;
+        final long time;      // e.g. the time (tick) of the latest known location
+        final long chaseDeadline; // When does the chase end?
+
+        public PreySighting(int r, int c, long t, long deadline) {
+            this.row            = r;
+            this.col            = c;
             this.time           = t;
-            this.isChased       = chased;
             this.chaseDeadline  = deadline;
         }
     }
 
     // -------------------------------------------
-    //  Shared blackboard for all wolves
+    //  Shared blackboard for all wolves of a world.
     //  Typically just store a single active chase
-    //  record. But we allow multiple for extension.
+    //  record, plus a bounded history.
+    // -------------------------------------------
+    private static final int BOARD_CAPACITY = 16;
+
     // -------------------------------------------
-    private static List<PreySighting> blackboard = Collections.synchronizedList(new ArrayList<>());
+    //  Shared map of where the pack saw preys,
+    //  for wolves that see none themselves.
+    // -------------------------------------------
+    private static final int MAP_CAPACITY  = 64;
+    private static final int HALF_LIFE     = 8;   // ticks
+    private static final int SEARCH_RADIUS = 40;
+
+    // A wolf outside of any world keeps a board and a clock of its own;
+    // joinPack swaps them for the ones of the pack and of the engine.
+    // Without a world there is no absolute position, and so no map.
+    private Blackboard blackboard = new Blackboard(BOARD_CAPACITY);
+    private SightingMap sightings;
+    private Pack pack;
+    private int id;
+    private long soloTime = 0;
+    private WolvesRandom random = new WolvesRandom();
 
     // Each wolf’s local state
     private boolean iAmManager  = false;
@@ -40,92 +62,146 @@ public class BlackboardWolf implements Wolf {
     private int  bestPreyCol    = 0;
     private long bestPreyTime   = -1;
 
-    // We’ll track a global time for demonstration 
-    // (could also come from the environment).
-    private static long globalTime = 0;
+    // Where we stand, and the size of the board (0 outside of a world)
+    private int myRow, myCol;
+    private int rows, cols;
 
     // A parameter controlling how long we chase one prey
-    private static final long CHASE_DURATION = 50; 
-    // You can adjust this based on your environment speed.
+    static final long CHASE_DURATION = 50; 
+    // You can adjust this based on your environment speed,
+    // or per wolf with the constructor, see WolvesSweep.
+    private final long chaseDuration;
+
+    public BlackboardWolf() {
+        this(CHASE_DURATION);
+    }
+
+    public BlackboardWolf(long chaseDuration) {
+        this.chaseDuration = chaseDuration;
+    }
+
+    @Override
+    public void joinPack(Pack pack, int wolf) {
+        this.pack = pack;
+        this.id = wolf;
+        random = pack.getRandom(wolf);
+        blackboard = pack.shared(BlackboardWolf.class, () -> new Blackboard(BOARD_CAPACITY));
+        if (pack.getNumbRows() > 0)
+            sightings = pack.shared(SightingMap.class,
+                () -> new SightingMap(pack.getNumbRows(), pack.getNumbCols(), MAP_CAPACITY, HALF_LIFE));
+    }
+
+    // The local state of this wolf; the blackboard and the map are saved
+    // with the pack
+    @Override
+    public void save(DataOutput out) throws IOException {
+        out.writeBoolean(iAmManager);
+        out.writeBoolean(inChaseMode);
+        out.writeInt(bestPreyRow);
+        out.writeInt(bestPreyCol);
+        out.writeLong(bestPreyTime);
+        out.writeLong(soloTime);
+        out.writeLong(random.getState());
+    }
+
+    @Override
+    public void restore(DataInput in) throws IOException {
+        iAmManager = in.readBoolean();
+        inChaseMode = in.readBoolean();
+        bestPreyRow = in.readInt();
+        bestPreyCol = in.readInt();
+        bestPreyTime = in.readLong();
+        soloTime = in.readLong();
+        random.setState(in.readLong());
+    }
 
     @Override
     public int[] moveAll(List<int[]> wolvesSight, List<int[]> preysSight) {
-        globalTime++;
+        long globalTime = pack != null ? pack.getTick() : ++soloTime;
+        rows = pack != null ? pack.getNumbRows() : 0;
+        cols = pack != null ? pack.getNumbCols() : 0;
+        myRow = rows > 0 ? pack.getRow(id) : 0;
+        myCol = rows > 0 ? pack.getCol(id) : 0;
 
-        // 1) Clean up or check if an active chase has ended
-        //    If the existing chase is beyond the deadline, mark isChased=false
-        expireOldChases();
+        // 1) A chase that is beyond its deadline has ended:
+        //    getActiveChase(globalTime) no longer returns it
 
-        // 2) Sort by distance so we can pick the *closest* prey if we see any
+        // 2) Sort by distance so we can pick the *closest* prey if we see any,
+        //    and tell the pack about every prey we see
         preysSight.sort(Comparator.comparingInt(o -> manhattanDistance(o[0], o[1], 0, 0)));
+        if (sightings != null) {
+            for (int[] prey : preysSight)
+                sightings.record(preyRow(prey), preyCol(prey), globalTime);
+        }
 
         if (!preysSight.isEmpty()) {
-            // We see a prey. If no chase is active, we start a new chase as manager
-            PreySighting active = getActiveChase();
+            // We see a prey, so that is where we go
+            int[] closestPrey = preysSight.get(0);
+            bestPreyRow       = preyRow(closestPrey);
+            bestPreyCol       = preyCol(closestPrey);
+            bestPreyTime      = globalTime;
+            inChaseMode       = true;
+
+            // If no chase is active, we start a new chase as manager
+            PreySighting active = blackboard.getActiveChase(globalTime);
             if (active == null) {
-                // Start a new chase
-                int[] closestPrey = preysSight.get(0);
-                bestPreyRow       = closestPrey[0];
-                bestPreyCol       = closestPrey[1];
-                bestPreyTime      = globalTime;
-
-                iAmManager        = true;
-                inChaseMode       = true;
-
-                // Add a new chase record to blackboard
-                long newDeadline  = globalTime + CHASE_DURATION;
-                blackboard.add(
+                // Add a new chase record to blackboard; if another wolf
+                // beat us to it, that wolf is the manager
+                long newDeadline  = globalTime + chaseDuration;
+                iAmManager = blackboard.startChase(
                     new PreySighting(bestPreyRow, bestPreyCol, bestPreyTime,
-                                     true, newDeadline)
-                );
-            } else {
-                // If we do see a prey, but there's already an active chase,
-                // maybe we ignore it, or we can refine the existing chase 
-                // if *this* wolf is the manager. For example:
-
-                if (iAmManager) {
-                    // I'm the manager, so I can update the blackboard with the 
-                    // prey's new location each tick. 
-                    // Only if we know it's the same prey (assuming it hasn't changed
-                    // drastically, maybe the prey moves at most 1 step).
-                    int[] closestPrey = preysSight.get(0);
-                    if (distanceIsReasonable(active, closestPrey)) {
-                        active.relRow = closestPrey[0];
-                        active.relCol = closestPrey[1];
-                        active.time   = globalTime;
-                        // We keep isChased=true until the deadline 
-                        // or until we decide we’ve captured it.
-                    }
-                }
-
-                // We might also join the chase if we’re not already in chase mode
-                if (!inChaseMode) {
-                    inChaseMode = true;
+                                     newDeadline), globalTime);
+            } else if (iAmManager) {
+                // I'm the manager, so I can update the blackboard with the 
+                // prey's new location each tick. 
+                // Only if we know it's the same prey (assuming it hasn't changed
+                // drastically, maybe the prey moves at most 1 step).
+                if (distanceIsReasonable(active, bestPreyRow, bestPreyCol)) {
+                    blackboard.updateChase(active,
+                        new PreySighting(bestPreyRow, bestPreyCol, globalTime,
+                                         active.chaseDeadline));
+                    // The chase stays on until the deadline
                 }
             }
+        } else if (sightings != null) {
+            // 3) We see no prey ourselves: head for the hottest spot the pack
+            //    reported near us, unless we just got there and it is empty
+            long spot = sightings.best(myRow, myCol, SEARCH_RADIUS, globalTime);
+            if (spot >= 0 && isNextToMe(sightings.getRow(spot), sightings.getCol(spot))) {
+                sightings.forget(sightings.getRow(spot), sightings.getCol(spot));
+                spot = sightings.best(myRow, myCol, SEARCH_RADIUS, globalTime);
+            }
+            if (spot >= 0) {
+                bestPreyRow  = sightings.getRow(spot);
+                bestPreyCol  = sightings.getCol(spot);
+                bestPreyTime = globalTime;
+            } else if (bestPreyTime >= 0 && isNextToMe(bestPreyRow, bestPreyCol)) {
+                // got where the prey was, and it is gone
+                bestPreyTime = -1;
+            }
         }
 
-        // 3) If we do not see a prey ourselves, we might learn from the blackboard
+        // 4) We might also learn from the blackboard
         //    if we are in “communication range” of other wolves
         if (wolvesInCommunicationRange(wolvesSight, 1)) {
-            PreySighting active = getActiveChase();
-            if (active != null && active.time > bestPreyTime && active.isChased) {
-                bestPreyRow  = active.relRow;
-                bestPreyCol  = active.relCol;
+            PreySighting active = blackboard.getActiveChase(globalTime);
+            if (active != null && active.time > bestPreyTime) {
+                bestPreyRow  = active.row;
+                bestPreyCol  = active.col;
                 bestPreyTime = active.time;
                 inChaseMode  = true;
             }
         }
 
-        // 4) If we’re manager but the chase ended, we revert
-        PreySighting chase = getActiveChase();
-        if (iAmManager && (chase == null || !chase.isChased)) {
+        // 5) If we’re manager but the chase ended, we revert
+        PreySighting chase = blackboard.getActiveChase(globalTime);
+        if (iAmManager && chase == null) {
             iAmManager  = false;
             inChaseMode = false;
         }
 
-        // 5) If we have an active chase in local memory, check if it’s still valid
-        if (bestPreyTime >= 0 && (globalTime - bestPreyTime) < CHASE_DURATION) {
+        // 6) If we have an active chase in local memory, check if it’s still valid
+        if (bestPreyTime >= 0 && (globalTime - bestPreyTime) < chaseDuration) {
             // still chase it
             inChaseMode = true;
         } else {
@@ -133,9 +209,9 @@ public class BlackboardWolf implements Wolf {
             inChaseMode = false;
         }
 
-        // 6) Move
+        // 7) Move
         if (inChaseMode) {
-            return moveToward(bestPreyRow, bestPreyCol);
+            return moveToward(offset(myRow, bestPreyRow, rows), offset(myCol, bestPreyCol, cols));
         } else {
             return randomMove();
         }
@@ -154,42 +230,43 @@ public class BlackboardWolf implements Wolf {
     //   HELPER FUNCTIONS
     // ----------------------------------------------------------------
 
-    private void expireOldChases() {
-        synchronized (blackboard) {
-            for (PreySighting ps : blackboard) {
-                if (globalTime > ps.chaseDeadline) {
-                    // The chase has expired
-                    ps.isChased = false;
-                }
-            }
-            // You could also remove them from the list if you'd prefer
-            // blackboard.removeIf(ps -> !ps.isChased);
-        }
+    // E.g. if the last known prey position was (x,y), 
+    // and the new sighting is (x+1,y) or (x,y+1), 
+    // we assume it’s the “same prey.”
+    private boolean distanceIsReasonable(PreySighting active, int newR, int newC) {
+        // If the prey can only move 1 tile each turn, 
+        // the difference should be <= 1 in row or col
+        return (Math.abs(offset(active.row, newR, rows)) <= 2
+                && Math.abs(offset(active.col, newC, cols)) <= 1);
     }
 
-    private PreySighting getActiveChase() {
-        // Return the first chase that isChased = true, or null if none
-        synchronized (blackboard) {
-            for (PreySighting ps : blackboard) {
-                if (ps.isChased) {
-                    return ps;
-                }
-            }
+    // What we see is relative to us: a prey at offset o stands at our
+    // position minus o, on the torus
+    private int preyRow(int[] prey) {
+        return wrap(myRow - prey[0], rows);
+    }
+
+    private int preyCol(int[] prey) {
+        return wrap(myCol - prey[1], cols);
+    }
+
+    private boolean isNextToMe(int row, int col) {
+        return Math.abs(offset(myRow, row, rows)) <= 1 && Math.abs(offset(myCol, col, cols)) <= 1;
+    }
+
+    // Steps from a to b along one axis, the short way round a torus of size n
+    // (no wrapping for n = 0)
+    private static int offset(int a, int b, int n) {
+        int d = b - a;
+        if (n > 0) {
+            if (d > n / 2) d -= n;
+            else if (d < -n / 2) d += n;
         }
-        return null;
+        return d;
     }
 
-    // E.g. if the last known prey offset was (x,y), 
-    // and the new sighting is (x+1,y) or (x,y+1), 
-    // we assume it’s the “same prey.”
-    private boolean distanceIsReasonable(PreySighting active, int[] newPrey) {
-        int oldR = active.relRow;
-        int oldC = active.relCol;
-        int newR = newPrey[0];
-        int newC = newPrey[1];
-        // If the prey can only move 1 tile each turn, 
-        // the difference should be <= 1 in row or col
-        return (Math.abs(newR - oldR) <= 2 && Math.abs(newC - oldC) <= 1);
+    private static int wrap(int x, int n) {
+        return n > 0 ? Math.floorMod(x, n) : x;
     }
 
     private boolean wolvesInCommunicationRange(List<int[]> wolvesSight, int range) {
@@ -211,15 +288,15 @@ public class BlackboardWolf implements Wolf {
         return 0;
     }
 
-    private int[] moveToward(int relRow, int relCol) {
-        int dRow = Integer.compare(relRow, 0); // -1 if relRow<0, +1 if relRow>0, else 0
-        int dCol = Integer.compare(relCol, 0);
+    private int[] moveToward(int rowOffset, int colOffset) {
+        int dRow = Integer.compare(rowOffset, 0); // -1 if rowOffset<0, +1 if rowOffset>0, else 0
+        int dCol = Integer.compare(colOffset, 0);
         return new int[]{ dRow, dCol };
     }
 
     private int[] randomMove() {
-        int r = (int)(Math.random() * 3) - 1;
-        int c = (int)(Math.random() * 3) - 1;
+        int r = random.nextInt(3) - 1;
+        int c = random.nextInt(3) - 1;
         return new int[]{ r, c };
     }
 
@@ -0,0 +1,13 @@
+// Allocation-free alternative to Wolf. The engine passes a reused WolfView
+// instead of fresh lists, and the wolf writes its move into an array owned
+// by the caller instead of returning a new one. Wolves that only implement
+// Wolf are wrapped in a WolfAdapter, so both kinds can play together.
+public interface BufferedWolf {
+	public abstract void moveAll(WolfView view, int[] moves, int slot);
+	// writes the ROW movement in {-1,0,1} to moves[slot]
+	// and the COL movement to moves[slot + 1]
+
+
+	public abstract int moveLim(WolfView view);
+	// returns 0 for No Movement, 1 for North, 2 for East, 3 for South, 4 for West
+}
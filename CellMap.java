@@ -0,0 +1,90 @@
+import java.util.Arrays;
+
+// Open-addressing hash map from a packed cell (row * cols + col) to an int,
+// with linear probing and no boxing. A value of 0 means "absent": putting 0
+// removes the key, using backward-shift deletion so that no tombstones pile
+// up while agents keep moving around.
+public class CellMap {
+
+    private static final long FREE = -1;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int shift;
+    private int size;
+
+    public CellMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int get(long key) {
+        for (int slot = slot(key); ; slot = (slot + 1) & mask) {
+            long k = keys[slot];
+            if (k == key) return values[slot];
+            if (k == FREE) return 0;
+        }
+    }
+
+    public void put(long key, int value) {
+        int slot = slot(key);
+        while (keys[slot] != FREE && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        if (keys[slot] == key) {
+            if (value != 0)
+                values[slot] = value;
+            else
+                delete(slot);
+        } else if (value != 0) {
+            keys[slot] = key;
+            values[slot] = value;
+            if (++size * 2 > keys.length)
+                resize(keys.length * 2);
+        }
+    }
+
+    // Fibonacci hashing, as neighbouring cells have neighbouring keys
+    private int slot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    // Empties the slot and moves later entries of the same probe run back
+    private void delete(int slot) {
+        size--;
+        int gap = slot;
+        for (int i = (gap + 1) & mask; keys[i] != FREE; i = (i + 1) & mask) {
+            int home = slot(keys[i]);
+            // move i into the gap unless its home lies cyclically in (gap, i]
+            if (((i - home) & mask) >= ((i - gap) & mask)) {
+                keys[gap] = keys[i];
+                values[gap] = values[i];
+                gap = i;
+            }
+        }
+        keys[gap] = FREE;
+        values[gap] = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[capacity];
+        Arrays.fill(keys, FREE);
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++)
+            if (oldKeys[i] != FREE)
+                put(oldKeys[i], oldValues[i]);
+    }
+}
@@ -0,0 +1,116 @@
+import java.util.Arrays;
+import java.util.Random;
+
+// Draws distinct cells of a board in random order, without ever trying a
+// cell twice: a Fisher-Yates shuffle of the cell numbers 0 .. cells-1,
+// row * cols + col, that stops as soon as nobody asks for more, so drawing
+// never slows down as the board fills up. Only the swapped positions of
+// the shuffled array are stored, all others still hold their own number:
+// in an array when the board is not much larger than the number of cells
+// expected to be drawn, and in a small hash table otherwise, so k draws
+// take O(k) time and memory however large the board is.
+class CellSampler {
+
+    // Up to this many cells per expected draw the array is cheaper than the
+    // table, whose every lookup is a cache miss
+    private static final int DENSE = 32;
+
+    private final long cells;
+    private final Random random;
+    private long drawn;
+
+    // 1 + the cell at each position, 0 for the position's own cell; or null
+    private int[] dense;
+
+    // Otherwise open addressing from a position to the cell now there
+    private long[] keys;
+    private long[] values;
+    private int size;
+
+    CellSampler(long cells, Random random, int expected) {
+        this.cells = cells;
+        this.random = random;
+        if (cells < Integer.MAX_VALUE && cells <= (long) DENSE * expected) {
+            dense = new int[(int) cells];
+        } else {
+            int capacity = Integer.highestOneBit(Math.max(8, 2 * expected - 1)) << 1;
+            keys = new long[capacity];
+            values = new long[capacity];
+            Arrays.fill(keys, -1);
+        }
+    }
+
+    // Back to no cell drawn, for drawing from the same board again. The
+    // array or table is as large as a few times the cells expected to be
+    // drawn, so this takes as long as drawing them.
+    void reset() {
+        drawn = 0;
+        if (dense != null) {
+            Arrays.fill(dense, 0);
+        } else {
+            Arrays.fill(keys, -1);
+            size = 0;
+        }
+    }
+
+    boolean hasNext() {
+        return drawn < cells;
+    }
+
+    // A cell that has not been drawn yet, each of them equally likely
+    long next() {
+        long i = drawn++;
+        long j = i + random.nextLong(cells - i);
+        long cell = get(j);
+        if (j != i)
+            put(j, get(i));
+        return cell;
+    }
+
+    private long get(long position) {
+        if (dense != null) {
+            int cell = dense[(int) position];
+            return cell == 0 ? position : cell - 1;
+        }
+        int slot = find(position);
+        return keys[slot] == position ? values[slot] : position;
+    }
+
+    private void put(long position, long cell) {
+        if (dense != null) {
+            dense[(int) position] = (int) cell + 1;
+            return;
+        }
+        int slot = find(position);
+        if (keys[slot] != position) {
+            keys[slot] = position;
+            if (++size * 2 > keys.length) {
+                grow();
+                slot = find(position);
+            }
+        }
+        values[slot] = cell;
+    }
+
+    private int find(long key) {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> (64 - Integer.numberOfTrailingZeros(keys.length)));
+        while (keys[slot] != -1 && keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys, oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new long[2 * oldValues.length];
+        Arrays.fill(keys, -1);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != -1) {
+                int slot = find(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+}
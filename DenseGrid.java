@@ -0,0 +1,86 @@
+// One int per cell for the occupant and one for the wolf count: the
+// fastest choice for boards that fit comfortably in memory.
+public class DenseGrid implements WolvesGrid {
+
+    private final int rows, cols;
+    private final int[][] cells;
+    private final int[][] adjacentWolves;
+
+    public DenseGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        cells = new int[rows][cols];
+        adjacentWolves = new int[rows][cols];
+    }
+
+    @Override
+    public int getNumbRows() {
+        return rows;
+    }
+
+    @Override
+    public int getNumbCols() {
+        return cols;
+    }
+
+    @Override
+    public int get(int row, int col) {
+        return cells[row][col];
+    }
+
+    @Override
+    public void set(int row, int col, int value) {
+        cells[row][col] = value;
+    }
+
+    @Override
+    public void move(int fromRow, int fromCol, int toRow, int toCol) {
+        cells[toRow][toCol] = cells[fromRow][fromCol];
+        cells[fromRow][fromCol] = 0;
+    }
+
+    // Three rows, read straight from their arrays
+    @Override
+    public int freeNeighbours(int row, int col) {
+        int[] above = cells[row == 0 ? rows - 1 : row - 1];
+        int[] here = cells[row];
+        int[] below = cells[row == rows - 1 ? 0 : row + 1];
+        int left = col == 0 ? cols - 1 : col - 1;
+        int right = col == cols - 1 ? 0 : col + 1;
+        return (above[left] == 0 ? 1 : 0)
+             | (above[col] == 0 ? 2 : 0)
+             | (above[right] == 0 ? 4 : 0)
+             | (here[left] == 0 ? 8 : 0)
+             | (here[right] == 0 ? 16 : 0)
+             | (below[left] == 0 ? 32 : 0)
+             | (below[col] == 0 ? 64 : 0)
+             | (below[right] == 0 ? 128 : 0);
+    }
+
+    @Override
+    public void addAdjacentAround(int row, int col, int delta) {
+        int[] above = adjacentWolves[row == 0 ? rows - 1 : row - 1];
+        int[] here = adjacentWolves[row];
+        int[] below = adjacentWolves[row == rows - 1 ? 0 : row + 1];
+        int left = col == 0 ? cols - 1 : col - 1;
+        int right = col == cols - 1 ? 0 : col + 1;
+        above[left] += delta;
+        above[col] += delta;
+        above[right] += delta;
+        here[left] += delta;
+        here[right] += delta;
+        below[left] += delta;
+        below[col] += delta;
+        below[right] += delta;
+    }
+
+    @Override
+    public int adjacent(int row, int col) {
+        return adjacentWolves[row][col];
+    }
+
+    @Override
+    public void addAdjacent(int row, int col, int delta) {
+        adjacentWolves[row][col] += delta;
+    }
+}
@@ -0,0 +1,254 @@
+import java.util.List;
+
+// A reference pursuit strategy on top of FlowFields. Every wolf goes for the
+// visible prey it can reach in the fewest steps. The wolves of the pack that
+// can reach that prey within its field share out the eight cells around
+// it: the closest wolf picks first, and takes the free cell nearest to it.
+// Far from the prey a wolf follows the field, which leads around anything
+// in the way; close to it, the wolf walks to its own cell. So the pack
+// comes in from all sides instead of queueing up behind one another, and
+// every wolf works the assignment out for itself from the same positions,
+// without any messages. Wolves left without a cell just close in.
+//
+// A wolf that sees no prey heads for the last prey any wolf of the pack
+// saw, for as long as that sighting is fresh. Outside of a world there are
+// no fields, and the wolf steps straight toward the nearest prey it sees.
+public class EncircleWolf implements Wolf, BufferedWolf, PackAware {
+
+    // Moves by index: 0 stands still. For moveLim the index is the direction.
+    private static final int[] ALL_DR = { 0, -1, -1, -1, 0, 0, 1, 1, 1 };
+    private static final int[] ALL_DC = { 0, -1, 0, 1, -1, 1, -1, 0, 1 };
+    private static final int[] LIM_DR = { 0, -1, 0, 1, 0 };
+    private static final int[] LIM_DC = { 0, 0, 1, 0, -1 };
+
+    // Beyond this many steps a wolf follows the field rather than heading for its cell
+    private static final int NEAR = 2;
+    // How many ticks a wolf that sees no prey follows the last sighting of the pack
+    private static final int FRESH = 20;
+
+    private Pack pack;
+    private int id;
+    private WolvesRandom random = new WolvesRandom();
+    private long[] lastSeen;   // row, col and tick of the last prey the pack saw
+
+    // Scratch space for the assignment of the cells around the prey
+    private int[] hunters = new int[0];
+    private int[] hunterSteps = new int[0];
+    private final int[] cellRow = new int[8];
+    private final int[] cellCol = new int[8];
+    private final boolean[] taken = new boolean[8];
+    private WolfView lists = new WolfView(0, 0);   // for the List flavour of Wolf
+
+    @Override
+    public void joinPack(Pack pack, int wolf) {
+        this.pack = pack;
+        this.id = wolf;
+        random = pack.getRandom(wolf);
+        lastSeen = pack.shared(EncircleWolf.class, () -> new long[] { 0, 0, Long.MIN_VALUE });
+    }
+
+    @Override
+    public void moveAll(WolfView view, int[] moves, int slot) {
+        int m = decide(view, ALL_DR, ALL_DC);
+        moves[slot] = ALL_DR[m];
+        moves[slot + 1] = ALL_DC[m];
+    }
+
+    @Override
+    public int moveLim(WolfView view) {
+        return decide(view, LIM_DR, LIM_DC);
+    }
+
+    @Override
+    public int[] moveAll(List<int[]> wolvesSight, List<int[]> preysSight) {
+        int m = decide(toView(preysSight), ALL_DR, ALL_DC);
+        return new int[] { ALL_DR[m], ALL_DC[m] };
+    }
+
+    @Override
+    public int moveLim(List<int[]> wolvesSight, List<int[]> preysSight) {
+        return decide(toView(preysSight), LIM_DR, LIM_DC);
+    }
+
+    // Only the preys matter to this wolf
+    private WolfView toView(List<int[]> preysSight) {
+        if (lists.preyRows.length < preysSight.size())
+            lists = new WolfView(0, preysSight.size());
+        lists.numPreys = preysSight.size();
+        for (int i = 0; i < lists.numPreys; i++) {
+            lists.preyRows[i] = preysSight.get(i)[0];
+            lists.preyCols[i] = preysSight.get(i)[1];
+        }
+        return lists;
+    }
+
+    // Picks one of the given moves, by index
+    private int decide(WolfView view, int[] dr, int[] dc) {
+        FlowFields fields = pack != null ? pack.getFlowFields() : null;
+        if (view.numPreys == 0)
+            return fields != null ? search(dr, dc) : random.nextInt(dr.length);
+        if (fields == null)
+            return toward(view, dr, dc);
+        int rows = pack.getNumbRows(), cols = pack.getNumbCols();
+        int myRow = pack.getRow(id), myCol = pack.getCol(id);
+
+        // What we see is relative to us: a prey at offset o stands at our
+        // position minus o
+        FlowFields.Field target = null;
+        int steps = Integer.MAX_VALUE;
+        for (int i = 0; i < view.numPreys; i++) {
+            FlowFields.Field f = fields.get(Math.floorMod(myRow - view.preyRows[i], rows),
+                                            Math.floorMod(myCol - view.preyCols[i], cols));
+            int s = f.steps(myRow, myCol);
+            if (s >= 0 && s < steps) {
+                target = f;
+                steps = s;
+            }
+        }
+        if (target == null)
+            return toward(view, dr, dc);   // hemmed in
+        synchronized (lastSeen) {
+            lastSeen[0] = target.getRow();
+            lastSeen[1] = target.getCol();
+            lastSeen[2] = pack.getTick();
+        }
+        int cell = assign(target, rows, cols);
+
+        int best = 0;
+        int bestFirst = Integer.MAX_VALUE, bestSecond = Integer.MAX_VALUE;
+        for (int k = 0; k < dr.length; k++) {
+            int r = Math.floorMod(myRow + dr[k], rows), c = Math.floorMod(myCol + dc[k], cols);
+            int d = k == 0 ? steps : target.distance(r, c);
+            if (d < 1)
+                continue;   // taken, out of reach, or the prey itself
+            int toCell = cell >= 0 ? chebyshev(r, c, cellRow[cell], cellCol[cell], rows, cols) : 0;
+            int first = steps > NEAR ? d : toCell;
+            int second = steps > NEAR ? toCell : d;
+            if (first < bestFirst || (first == bestFirst && second < bestSecond)) {
+                best = k;
+                bestFirst = first;
+                bestSecond = second;
+            }
+        }
+        return best;
+    }
+
+    // Toward the last prey the pack saw, or anywhere
+    private int search(int[] dr, int[] dc) {
+        long row, col, tick;
+        synchronized (lastSeen) {
+            row = lastSeen[0];
+            col = lastSeen[1];
+            tick = lastSeen[2];
+        }
+        if (pack.getTick() - tick > FRESH)
+            return random.nextInt(dr.length);
+        int rows = pack.getNumbRows(), cols = pack.getNumbCols();
+        int dRow = offset(pack.getRow(id), (int) row, rows), dCol = offset(pack.getCol(id), (int) col, cols);
+        int best = 0, bestDistance = Integer.MAX_VALUE;
+        for (int k = 0; k < dr.length; k++) {
+            int d = Math.max(Math.abs(dRow - dr[k]), Math.abs(dCol - dc[k]));
+            if (d < bestDistance) {
+                best = k;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    // Steps from a to b along one axis, the short way round a torus of size n
+    private static int offset(int a, int b, int n) {
+        int d = b - a;
+        if (d > n / 2) d -= n;
+        else if (d < -n / 2) d += n;
+        return d;
+    }
+
+    // The cell around the target that falls to this wolf, as an index into
+    // cellRow/cellCol, or -1 if closer wolves took them all
+    private int assign(FlowFields.Field target, int rows, int cols) {
+        int n = pack.getNumbWolves();
+        if (hunters.length < n) {
+            hunters = new int[n];
+            hunterSteps = new int[n];
+        }
+        // The wolves that can reach the target, closest first, by index on a
+        // tie. Only those next to the window of the field can, so the wolves
+        // around the target are all there is to look at.
+        int near = pack.wolvesAround(target.getRow(), target.getCol(), pack.getFlowFields().getRadius() + 1, hunters);
+        int count = 0;
+        for (int i = 0; i < near; i++) {
+            int w = hunters[i];
+            int s = target.steps(pack.getRow(w), pack.getCol(w));
+            if (s < 0)
+                continue;
+            int j = count++;
+            while (j > 0 && (hunterSteps[j - 1] > s || (hunterSteps[j - 1] == s && hunters[j - 1] > w))) {
+                hunters[j] = hunters[j - 1];
+                hunterSteps[j] = hunterSteps[j - 1];
+                j--;
+            }
+            hunters[j] = w;
+            hunterSteps[j] = s;
+        }
+        // Cells that are free now; one a wolf stands on is free for that wolf only
+        int k = 0;
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                if (dr == 0 && dc == 0)
+                    continue;
+                cellRow[k] = Math.floorMod(target.getRow() + dr, rows);
+                cellCol[k] = Math.floorMod(target.getCol() + dc, cols);
+                taken[k] = target.distance(cellRow[k], cellCol[k]) != 1;
+                k++;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            int w = hunters[i];
+            int wr = pack.getRow(w), wc = pack.getCol(w);
+            int cell = -1, nearest = Integer.MAX_VALUE;
+            for (k = 0; k < 8; k++) {
+                boolean mine = cellRow[k] == wr && cellCol[k] == wc;
+                if (taken[k] && !mine)
+                    continue;
+                int d = mine ? 0 : chebyshev(wr, wc, cellRow[k], cellCol[k], rows, cols);
+                if (d < nearest) {
+                    cell = k;
+                    nearest = d;
+                }
+            }
+            if (cell < 0)
+                return -1;   // all cells are gone, for us too
+            taken[cell] = true;
+            if (w == id)
+                return cell;
+        }
+        return -1;
+    }
+
+    // The move that brings us closest to the nearest prey we see, ignoring the rest
+    private static int toward(WolfView view, int[] dr, int[] dc) {
+        int nearest = 0;
+        for (int i = 1; i < view.numPreys; i++) {
+            if (Math.abs(view.preyRows[i]) + Math.abs(view.preyCols[i])
+                    < Math.abs(view.preyRows[nearest]) + Math.abs(view.preyCols[nearest]))
+                nearest = i;
+        }
+        int best = 0, bestDistance = Integer.MAX_VALUE;
+        for (int k = 0; k < dr.length; k++) {
+            // moving by (dr, dc) changes our offset to the prey by the same
+            int d = Math.abs(view.preyRows[nearest] + dr[k]) + Math.abs(view.preyCols[nearest] + dc[k]);
+            if (d < bestDistance) {
+                best = k;
+                bestDistance = d;
+            }
+        }
+        return best;
+    }
+
+    private static int chebyshev(int r0, int c0, int r1, int c1, int rows, int cols) {
+        int dr = Math.abs(r0 - r1);
+        int dc = Math.abs(c0 - c1);
+        return Math.max(Math.min(dr, rows - dr), Math.min(dc, cols - dc));
+    }
+}
@@ -0,0 +1,312 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Records a Wolves world to an append-only binary log that EpisodeReplay
+// plays back without running any prey or wolf code again:
+//
+//     game.addListener(new EpisodeRecorder(game, "game.wolves"));
+//
+// The log starts with a header holding the board, the wolf classes and the
+// position of every agent when recording started. Then comes one record
+// per tick, made of varints:
+//
+//     numMoves + 1
+//     per move:    zigzag(agent - previous agent) << 3 | direction
+//     numCaptures
+//     per capture: zigzag(prey - previous prey)
+//
+// with agents in the grid encoding (2i+1 wolf i, 2i+2 prey i) and the
+// direction as an index into PreyStrips.DR/DC, as every move is a single
+// step. A 0 where the next tick would start marks the end of the game.
+// A tick of a small world takes a couple of bytes per agent that moved.
+//
+// The ticking thread only encodes into a chunk in memory. Full chunks go
+// to a writer thread that copies them into the file through a memory
+// mapping, and come back for reuse; when the writer falls behind by more
+// than a few chunks, the ticking thread waits for it.
+public class EpisodeRecorder implements WolvesListener, Closeable {
+
+    static final int MAGIC = 0x574F4C56;   // "WOLV"
+    static final int VERSION = 1;
+
+    private static final int CHUNKS = 4;
+    private static final long WINDOW = 64L << 20;   // bytes mapped at a time
+
+    private static class Chunk {
+        final byte[] data;
+        int length;
+
+        Chunk(int size) {
+            data = new byte[size];
+        }
+    }
+
+    private static final Chunk END = new Chunk(0);
+
+    private final int rows, cols;
+    private final int maxTick;    // bound on the bytes of one tick record, plus the end marker
+    private final int chunkSize;
+    private final BlockingQueue<Chunk> free = new ArrayBlockingQueue<>(CHUNKS);
+    private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(CHUNKS + 1);
+    private Chunk chunk;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final Thread writer;
+    private volatile IOException failure;
+    private volatile long written;
+    private boolean closed;
+
+    public EpisodeRecorder(Wolves game, String path) throws IOException {
+        rows = game.getNumbRows();
+        cols = game.getNumbCols();
+        maxTick = maxTickBytes(game.getNumbWolves(), game.getNumbPreys());
+        chunkSize = Math.max(64 * 1024, 2 * maxTick);
+        for (int i = 0; i < CHUNKS; i++)
+            free.add(new Chunk(chunkSize));
+        chunk = free.poll();
+
+        file = new RandomAccessFile(path, "rw");
+        file.setLength(0);
+        channel = file.getChannel();
+        writer = new Thread(this::write, "wolves-recorder");
+        writer.setDaemon(true);
+        writer.start();
+        writeHeader(game);
+    }
+
+    private void writeHeader(Wolves game) {
+        WolvesResult state = game.getResult();
+        int numWolves = game.getNumbWolves();
+        int numPreys = game.getNumbPreys();
+        byte[] names = names(state);
+        Chunk header = new Chunk(64 + maxStateBytes(numWolves, numPreys) + names.length);
+        int pos = 0;
+        byte[] b = header.data;
+        pos = putInt(b, pos, MAGIC);
+        pos = putVarint(b, pos, VERSION);
+        pos = putVarint(b, pos, rows);
+        pos = putVarint(b, pos, cols);
+        pos = putVarint(b, pos, numWolves);
+        pos = putVarint(b, pos, numPreys);
+        pos = putVarlong(b, pos, game.getTickCount());
+        pos = putVarint(b, pos, names.length);
+        System.arraycopy(names, 0, b, pos, names.length);
+        pos += names.length;
+        header.length = putState(b, pos, game, state);
+        hand(header);
+    }
+
+    // The position of every agent, wolves first, then the captured preys
+    static int putState(byte[] b, int pos, Wolves game, WolvesResult state) {
+        for (int i = 0; i < game.getNumbWolves(); i++) {
+            pos = putVarint(b, pos, game.getWolfRow(i));
+            pos = putVarint(b, pos, game.getWolfCol(i));
+        }
+        for (int i = 0; i < game.getNumbPreys(); i++) {
+            pos = putVarint(b, pos, game.getPreyRow(i));
+            pos = putVarint(b, pos, game.getPreyCol(i));
+        }
+        pos = putVarint(b, pos, state.getNumbCaptured());
+        for (int i = 0; i < state.getNumbCaptured(); i++)
+            pos = putVarint(b, pos, state.getCapturedPrey(i));
+        return pos;
+    }
+
+    static int maxStateBytes(int numWolves, int numPreys) {
+        return 5 + 10 * (numWolves + numPreys) + 5 * numPreys;
+    }
+
+    // Bound on the bytes of one tick record, plus the end marker
+    static int maxTickBytes(int numWolves, int numPreys) {
+        return 11 + 5 * (numWolves + numPreys) + 5 * numPreys;
+    }
+
+    // The class names of the wolves, one per line
+    private static byte[] names(WolvesResult state) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < state.getNumbWolves(); i++)
+            sb.append(state.getWolfName(i)).append('\n');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public synchronized void tickCompleted(Wolves game) {
+        if (closed)
+            return;
+        if (chunk.length + maxTick > chunk.data.length)
+            next();
+        chunk.length = putTick(chunk.data, chunk.length, game.getDelta(), rows, cols);
+    }
+
+    // One tick record, see above
+    static int putTick(byte[] b, int pos, TickDelta delta, int rows, int cols) {
+        pos = putVarint(b, pos, delta.numMoves + 1);
+        int previous = 0;
+        for (int k = 0; k < delta.numMoves; k++) {
+            int dir = direction(offset(delta.toRow[k] - delta.fromRow[k], rows),
+                                offset(delta.toCol[k] - delta.fromCol[k], cols));
+            pos = putVarint(b, pos, zigzag(delta.agent[k] - previous) << 3 | dir);
+            previous = delta.agent[k];
+        }
+        pos = putVarint(b, pos, delta.numCaptures);
+        previous = 0;
+        for (int k = 0; k < delta.numCaptures; k++) {
+            pos = putVarint(b, pos, zigzag(delta.captured[k] - previous));
+            previous = delta.captured[k];
+        }
+        return pos;
+    }
+
+    @Override
+    public void gameOver(Wolves game, WolvesResult result) {
+        try {
+            close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // Writes the end marker and everything still in memory, and closes the
+    // file. Called by gameOver; call it yourself to stop recording earlier.
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+        closed = true;
+        try {
+            chunk.data[chunk.length++] = 0;
+            hand(chunk);
+            hand(END);
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while closing the recording", e);
+        } finally {
+            channel.truncate(written);
+            file.close();
+        }
+        if (failure != null)
+            throw failure;
+    }
+
+    // Whether the writer thread failed; the error is thrown by close
+    public boolean hasFailed() {
+        return failure != null;
+    }
+
+    // Bytes in the file so far
+    public long getWritten() {
+        return written;
+    }
+
+    private void next() {
+        hand(chunk);
+        try {
+            chunk = free.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while recording", e);
+        }
+        chunk.length = 0;
+    }
+
+    private void hand(Chunk c) {
+        try {
+            full.put(c);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while recording", e);
+        }
+    }
+
+    // The writer thread: copies chunks into the mapped file, one window at a
+    // time. After a failure it keeps taking chunks, so that the ticking
+    // thread never waits for it, and drops them.
+    private void write() {
+        MappedByteBuffer window = null;
+        while (true) {
+            Chunk c;
+            try {
+                c = full.take();
+            } catch (InterruptedException e) {
+                failure = new IOException("recorder interrupted", e);
+                return;
+            }
+            if (c == END)
+                break;
+            try {
+                int off = 0;
+                while (failure == null && off < c.length) {
+                    if (window == null || !window.hasRemaining()) {
+                        if (window != null)
+                            window.force();
+                        window = channel.map(FileChannel.MapMode.READ_WRITE, written, WINDOW);
+                    }
+                    int n = Math.min(c.length - off, window.remaining());
+                    window.put(c.data, off, n);
+                    off += n;
+                    written += n;
+                }
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (c.data.length == chunkSize)
+                free.offer(c);
+        }
+        if (window != null && failure == null)
+            window.force();
+    }
+
+    // Direction code of a single step, see PreyStrips.DR/DC
+    private static int direction(int dr, int dc) {
+        for (int d = 0; d < 8; d++)
+            if (PreyStrips.DR[d] == dr && PreyStrips.DC[d] == dc)
+                return d;
+        throw new IllegalStateException("not a single step: " + dr + "," + dc);
+    }
+
+    // A difference of positions on a torus of size n as a step of -1, 0 or 1
+    private static int offset(int d, int n) {
+        if (d > 1) d -= n;
+        else if (d < -1) d += n;
+        return d;
+    }
+
+    static int zigzag(int v) {
+        return (v << 1) ^ (v >> 31);
+    }
+
+    static int putInt(byte[] b, int pos, int v) {
+        b[pos] = (byte) (v >>> 24);
+        b[pos + 1] = (byte) (v >>> 16);
+        b[pos + 2] = (byte) (v >>> 8);
+        b[pos + 3] = (byte) v;
+        return pos + 4;
+    }
+
+    static int putVarint(byte[] b, int pos, int v) {
+        while ((v & ~0x7F) != 0) {
+            b[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        b[pos++] = (byte) v;
+        return pos;
+    }
+
+    static int putVarlong(byte[] b, int pos, long v) {
+        while ((v & ~0x7FL) != 0) {
+            b[pos++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        b[pos++] = (byte) v;
+        return pos;
+    }
+}
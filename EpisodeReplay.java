@@ -0,0 +1,282 @@
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+// Plays back a game recorded by EpisodeRecorder, tick by tick, straight
+// from the log: no random numbers are drawn and no wolf is asked anything,
+// so a replay is exactly the recorded game and runs at the speed of
+// decoding a few bytes per move. It is a WolvesBoard, so WolvesUI can show
+// it and WolvesScheduler can drive it:
+//
+//     EpisodeReplay replay = new EpisodeReplay("game.wolves");
+//     WolvesUI ui = new WolvesUI(replay, 15);
+//     replay.addListener(r -> ui.boardChanged(r.getDelta()));
+//
+// or run it headless from the command line:
+//
+//     java EpisodeReplay game.wolves
+public class EpisodeReplay implements WolvesBoard {
+
+    private final MappedByteBuffer log;
+    private final int first;          // offset of the first tick record
+    private final int rows, cols;
+    private final int numWolves, numPreys;
+    private final String[] wolfNames;
+    private final long startTick;
+    private final int[] startRow, startCol;   // by grid code, 2i+1 wolf i and 2i+2 prey i
+    private final BitSet startCaptured = new BitSet();
+
+    private final WolvesGrid grid;
+    private final int[] row, col;
+    private final BitSet captured = new BitSet();
+    private final TickDelta delta;
+    private final List<Consumer<EpisodeReplay>> listeners = new ArrayList<>();
+    private long tickcounter;
+    private boolean gameOver;
+
+    public EpisodeReplay(String path) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            if (file.length() > Integer.MAX_VALUE)
+                throw new IOException(path + ": recordings over 2 GB can not be replayed");
+            log = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+        }
+        if (log.remaining() < 4 || log.getInt() != EpisodeRecorder.MAGIC)
+            throw new IOException(path + ": not a Wolves recording");
+        int version = varint();
+        if (version != EpisodeRecorder.VERSION)
+            throw new IOException(path + ": recording version " + version + " not supported");
+        rows = varint();
+        cols = varint();
+        numWolves = varint();
+        numPreys = varint();
+        startTick = varlong();
+        byte[] names = new byte[varint()];
+        log.get(names);
+        wolfNames = new String(names, StandardCharsets.UTF_8).split("\n", -1);
+
+        int codes = 2 * Math.max(numWolves, numPreys) + 3;
+        startRow = new int[codes];
+        startCol = new int[codes];
+        for (int i = 0; i < numWolves; i++) {
+            startRow[2 * i + 1] = varint();
+            startCol[2 * i + 1] = varint();
+        }
+        for (int i = 0; i < numPreys; i++) {
+            startRow[2 * i + 2] = varint();
+            startCol[2 * i + 2] = varint();
+        }
+        int numCaptured = varint();
+        for (int i = 0; i < numCaptured; i++)
+            startCaptured.set(varint());
+        first = log.position();
+
+        if ((long) rows * cols <= 1 << 24)
+            grid = new DenseGrid(rows, cols);
+        else
+            grid = new SparseGrid(rows, cols, numWolves + numPreys);
+        row = new int[codes];
+        col = new int[codes];
+        delta = new TickDelta(numWolves, numPreys);
+        rewind();
+    }
+
+    // Back to the state the recording started from
+    public void rewind() {
+        for (int code = 1; code < row.length; code++) {
+            if (isAgent(code) && grid.get(row[code], col[code]) == code)
+                grid.set(row[code], col[code], 0);
+        }
+        for (int code = 1; code < row.length; code++) {
+            row[code] = startRow[code];
+            col[code] = startCol[code];
+            if (isAgent(code))
+                grid.set(row[code], col[code], code);
+        }
+        captured.clear();
+        captured.or(startCaptured);
+        delta.clear();
+        log.position(first);
+        tickcounter = startTick;
+        gameOver = false;
+    }
+
+    private boolean isAgent(int code) {
+        return code % 2 == 1 ? (code - 1) / 2 < numWolves : code > 0 && (code - 2) / 2 < numPreys;
+    }
+
+    // Plays the next recorded tick. At the end of the recording the replay
+    // is over and nothing changes any more.
+    public void tick() {
+        if (gameOver)
+            return;
+        delta.clear();
+        int n = log.hasRemaining() ? varint() - 1 : -1;
+        if (n < 0) {
+            // the end marker, or a recording that was cut short
+            gameOver = true;
+            return;
+        }
+        int agent = 0;
+        for (int k = 0; k < n; k++) {
+            int v = varint();
+            agent += unzigzag(v >>> 3);
+            int dir = v & 7;
+            int fromR = row[agent], fromC = col[agent];
+            int toR = wrap(fromR + PreyStrips.DR[dir], rows);
+            int toC = wrap(fromC + PreyStrips.DC[dir], cols);
+            grid.set(fromR, fromC, 0);
+            grid.set(toR, toC, agent);
+            row[agent] = toR;
+            col[agent] = toC;
+            delta.move(agent, fromR, fromC, toR, toC);
+        }
+        int numCaptures = varint();
+        int prey = 0;
+        for (int k = 0; k < numCaptures; k++) {
+            prey += unzigzag(varint());
+            captured.set(prey);
+            delta.capture(prey);
+        }
+        tickcounter++;
+        for (Consumer<EpisodeReplay> l : listeners)
+            l.accept(this);
+    }
+
+    // Plays the rest of the recording, or until tick maxTicks
+    public void run(long maxTicks) {
+        while (!gameOver && tickcounter < maxTicks)
+            tick();
+    }
+
+    // Called after every replayed tick
+    public void addListener(Consumer<EpisodeReplay> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<EpisodeReplay> listener) {
+        listeners.remove(listener);
+    }
+
+    public TickDelta getDelta() {
+        return delta;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public long getTickCount() {
+        return tickcounter;
+    }
+
+    public int getNumbRows() {
+        return rows;
+    }
+
+    public int getNumbCols() {
+        return cols;
+    }
+
+    public int getNumbWolves() {
+        return numWolves;
+    }
+
+    public int getNumbPreys() {
+        return numPreys;
+    }
+
+    public String getWolfName(int wolf) {
+        return wolfNames[wolf];
+    }
+
+    public int getWolfRow(int wolf) {
+        return row[2 * wolf + 1];
+    }
+
+    public int getWolfCol(int wolf) {
+        return col[2 * wolf + 1];
+    }
+
+    public int getPreyRow(int prey) {
+        return row[2 * prey + 2];
+    }
+
+    public int getPreyCol(int prey) {
+        return col[2 * prey + 2];
+    }
+
+    public boolean isCaptured(int prey) {
+        return captured.get(prey);
+    }
+
+    public int getNumbCaptured() {
+        return captured.cardinality();
+    }
+
+    public boolean isWolf(int i, int j) {
+        return grid.get(i, j) % 2 == 1;
+    }
+
+    public boolean isPrey(int i, int j) {
+        int cell = grid.get(i, j);
+        return cell != 0 && cell % 2 == 0;
+    }
+
+    private int varint() {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = log.get();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    private long varlong() {
+        long v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = log.get();
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+
+    private static int unzigzag(int v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    private static int wrap(int x, int n) {
+        if (x < 0) return x + n;
+        if (x >= n) return x - n;
+        return x;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("USAGE: java EpisodeReplay file");
+            System.exit(-1);
+        }
+        EpisodeReplay replay = new EpisodeReplay(args[0]);
+        long start = System.nanoTime();
+        replay.run(Long.MAX_VALUE);
+        long nanos = System.nanoTime() - start;
+        long ticks = replay.getTickCount() - replay.startTick;
+        System.out.printf("%s: %dx%d, %d wolves, %d preys%n", args[0], replay.getNumbRows(), replay.getNumbCols(),
+                replay.getNumbWolves(), replay.getNumbPreys());
+        Map<String, Integer> lineup = new TreeMap<>();
+        for (int i = 0; i < replay.getNumbWolves(); i++)
+            lineup.merge(replay.getWolfName(i), 1, Integer::sum);
+        System.out.println("  wolves " + lineup);
+        System.out.printf("%d ticks, %d preys captured, replayed in %.1f ms (%.2f million ticks/s)%n",
+                ticks, replay.getNumbCaptured(), nanos / 1e6, ticks / (nanos / 1e3));
+    }
+}
@@ -0,0 +1,62 @@
+// A prey that runs from the nearest wolf it sees: of its safe steps (or, if
+// there are none, its free ones) it takes one that puts it farthest from
+// that wolf, at random among equally good ones. Without a wolf in sight it
+// walks at random like RandomPrey.
+//
+// The wolf is found by looking at the board in rings of growing distance
+// around the prey, up to sight, like FlockingPrey looks at its square, so a
+// prey costs the same however many wolves there are. Of equally near wolves
+// it runs from the first in the ring.
+public class FleeingPrey implements PreyPolicy {
+
+    private final int sight;   // Manhattan distance, like the visibility of the wolves
+
+    public FleeingPrey(int sight) {
+        this.sight = sight;
+    }
+
+    @Override
+    public int move(Wolves world, int prey, int free, long random) {
+        int row = world.getPreyRow(prey), col = world.getPreyCol(prey);
+        int safe = world.safeNeighbours(row, col, free);
+        int moves = safe != 0 ? safe : free;
+        // Offsets of up to half the board each way reach every cell once
+        int halfRows = world.getNumbRows() / 2, halfCols = world.getNumbCols() / 2;
+        int wolfRow = 0, wolfCol = 0, nearest = Integer.MAX_VALUE;
+        for (int d = 1; d <= Math.min(sight, halfRows + halfCols) && nearest == Integer.MAX_VALUE; d++) {
+            for (int dr = -Math.min(d, halfRows); dr <= Math.min(d, halfRows) && nearest == Integer.MAX_VALUE; dr++) {
+                int dc = d - Math.abs(dr);
+                if (dc > halfCols)
+                    continue;
+                int r = world.rowWrap(row, dr);
+                for (int side = dc == 0 ? 1 : -1; side <= 1; side += 2) {
+                    int c = world.colWrap(col, side * dc);
+                    if (world.isWolf(r, c)) {
+                        nearest = d;
+                        wolfRow = world.rowDistance(row, r);
+                        wolfCol = world.colDistance(col, c);
+                        break;
+                    }
+                }
+            }
+        }
+        if (nearest == Integer.MAX_VALUE)
+            return PreyPolicy.pick(moves, random);
+
+        // wolfRow/wolfCol is our offset from the wolf; a step adds to it
+        int best = 0, bestDistance = -1;
+        for (int d = 0; d < 8; d++) {
+            if ((moves & (1 << d)) == 0)
+                continue;
+            int r = wolfRow + PreyStrips.DR[d], c = wolfCol + PreyStrips.DC[d];
+            int distance = r * r + c * c;
+            if (distance > bestDistance) {
+                best = 1 << d;
+                bestDistance = distance;
+            } else if (distance == bestDistance) {
+                best |= 1 << d;
+            }
+        }
+        return PreyPolicy.pick(best, random);
+    }
+}
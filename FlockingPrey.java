@@ -0,0 +1,53 @@
+// A prey that keeps to the other preys: of its safe steps (or, if there
+// are none, its free ones) it takes one toward the centre of the preys
+// within radius cells, at random among equally good ones. Alone it walks at
+// random like RandomPrey. Cells next to another prey are often taken, so
+// the flock stays loose rather than collapsing into a block.
+//
+// The preys around are found by looking at the (2 radius + 1)^2 cells of
+// the board, a fixed cost per prey however many preys there are.
+public class FlockingPrey implements PreyPolicy {
+
+    private final int radius;
+
+    public FlockingPrey(int radius) {
+        this.radius = radius;
+    }
+
+    @Override
+    public int move(Wolves world, int prey, int free, long random) {
+        int row = world.getPreyRow(prey), col = world.getPreyCol(prey);
+        int safe = world.safeNeighbours(row, col, free);
+        int moves = safe != 0 ? safe : free;
+        int sumRow = 0, sumCol = 0, count = 0;
+        for (int dr = -radius; dr <= radius; dr++) {
+            int r = world.rowWrap(row, dr);
+            for (int dc = -radius; dc <= radius; dc++) {
+                if ((dr != 0 || dc != 0) && world.isPrey(r, world.colWrap(col, dc))) {
+                    sumRow += dr;
+                    sumCol += dc;
+                    count++;
+                }
+            }
+        }
+        if (count == 0)
+            return PreyPolicy.pick(moves, random);
+
+        // Squared distances to the centre, times count squared to stay in integers
+        int best = 0;
+        long bestDistance = Long.MAX_VALUE;
+        for (int d = 0; d < 8; d++) {
+            if ((moves & (1 << d)) == 0)
+                continue;
+            long r = (long) PreyStrips.DR[d] * count - sumRow, c = (long) PreyStrips.DC[d] * count - sumCol;
+            long distance = r * r + c * c;
+            if (distance < bestDistance) {
+                best = 1 << d;
+                bestDistance = distance;
+            } else if (distance == bestDistance) {
+                best |= 1 << d;
+            }
+        }
+        return PreyPolicy.pick(best, random);
+    }
+}
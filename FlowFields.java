@@ -0,0 +1,205 @@
+import java.util.Arrays;
+
+// Distances to the preys of a world, for pursuit strategies to share. The
+// field of a prey holds, for every free cell within radius of it (in
+// either direction, on the torus), the number of diagonal-or-straight steps
+// a wolf needs from there to the prey, going around every occupied cell.
+// It is one breadth-first search over the window around the prey.
+//
+// Fields are computed on the first request during a tick and kept for the
+// rest of it, so a prey that twenty wolves hunt costs one search, not
+// twenty. The engine drops them once the preys have moved; a Field must
+// not be kept beyond the tick it was asked for. Wolves get the FlowFields
+// of their world from Pack.getFlowFields.
+//
+// get is synchronized, as wolves may decide on several threads at once,
+// see Wolves.setParallelDecisions; a Field is only read once computed.
+public class FlowFields {
+
+    private final WolvesGrid grid;
+    private final int rows, cols;
+    private final int radius;
+    private final int height, width;   // of the window of a field
+
+    // Open addressing from row * cols + col of a prey to its field
+    private long[] keys = new long[64];
+    private Field[] values = new Field[64];
+    private int size;
+    private Field[] free = new Field[16];
+    private int numFree;
+
+    private final int[] queue;
+    private long computed;
+
+    FlowFields(WolvesGrid grid, int radius) {
+        this.grid = grid;
+        this.rows = grid.getNumbRows();
+        this.cols = grid.getNumbCols();
+        this.radius = radius;
+        height = (int) Math.min(rows, 2L * radius + 1);
+        width = (int) Math.min(cols, 2L * radius + 1);
+        queue = new int[height * width];
+    }
+
+    // Forgets the fields of the last tick, keeping them for reuse
+    synchronized void clear() {
+        if (size == 0)
+            return;
+        for (int i = 0; i < values.length; i++) {
+            if (values[i] != null) {
+                if (numFree == free.length)
+                    free = Arrays.copyOf(free, 2 * numFree);
+                free[numFree++] = values[i];
+                values[i] = null;
+            }
+        }
+        size = 0;
+    }
+
+    // The field of the prey at (row, col), as the board is during this tick
+    public synchronized Field get(int row, int col) {
+        long key = (long) row * cols + col;
+        int i = slot(key);
+        if (values[i] != null)
+            return values[i];
+        Field f = numFree > 0 ? free[--numFree] : new Field();
+        f.compute(row, col);
+        computed++;
+        keys[i] = key;
+        values[i] = f;
+        if (++size * 2 > values.length)
+            grow();
+        return f;
+    }
+
+    // How far the fields reach from their prey
+    public int getRadius() {
+        return radius;
+    }
+
+    // Fields computed since the world started
+    public synchronized long getComputed() {
+        return computed;
+    }
+
+    private int slot(long key) {
+        int mask = values.length - 1;
+        int h = (int) (key ^ (key >>> 32)) * 0x9E3779B9;
+        int i = (h ^ (h >>> 16)) & mask;
+        while (values[i] != null && keys[i] != key)
+            i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        Field[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new Field[2 * oldValues.length];
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                int j = slot(oldKeys[i]);
+                keys[j] = oldKeys[i];
+                values[j] = oldValues[i];
+            }
+        }
+    }
+
+    public class Field {
+        private final int[] dist = new int[height * width];   // -1 out of reach, -2 taken
+        private int row, col;
+        private int top, left;   // the cell in the corner of the window
+
+        private void compute(int row, int col) {
+            this.row = row;
+            this.col = col;
+            top = Math.floorMod(row - radius, rows);
+            left = Math.floorMod(col - radius, cols);
+            // One look at the board per cell: -1 for free, -2 for taken
+            for (int lr = 0, r = top; lr < height; lr++, r = wrap(r + 1, rows)) {
+                for (int lc = 0, c = left; lc < width; lc++, c = wrap(c + 1, cols))
+                    dist[lr * width + lc] = grid.get(r, c) == 0 ? -1 : -2;
+            }
+            int head = 0, tail = 0;
+            int source = local(row, col);
+            dist[source] = 0;
+            queue[tail++] = source;
+            while (head < tail) {
+                int cell = queue[head++];
+                int lr = cell / width, lc = cell - lr * width;
+                int d = dist[cell] + 1;
+                for (int dr = -1; dr <= 1; dr++) {
+                    int nr = lr + dr;
+                    // a window as large as the board wraps around, any other ends
+                    if (nr < 0 || nr >= height) {
+                        if (height < rows)
+                            continue;
+                        nr = wrap(nr, height);
+                    }
+                    for (int dc = -1; dc <= 1; dc++) {
+                        int nc = lc + dc;
+                        if (nc < 0 || nc >= width) {
+                            if (width < cols)
+                                continue;
+                            nc = wrap(nc, width);
+                        }
+                        int next = nr * width + nc;
+                        if (dist[next] != -1)
+                            continue;
+                        dist[next] = d;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+        }
+
+        // Where the prey stands
+        public int getRow() {
+            return row;
+        }
+
+        public int getCol() {
+            return col;
+        }
+
+        // Steps from the free cell (row, col) to the prey: 0 on the prey
+        // itself, -1 if the cell is taken or the prey can not be reached
+        // from it within the window
+        public int distance(int row, int col) {
+            int cell = local(row, col);
+            return cell < 0 ? -1 : Math.max(-1, dist[cell]);
+        }
+
+        // Steps for an agent standing on (row, col), whose own cell is
+        // taken by itself: one more than the best of its neighbours
+        public int steps(int row, int col) {
+            if (row == this.row && col == this.col)
+                return 0;
+            int best = -1;
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    if (dr == 0 && dc == 0)
+                        continue;
+                    int d = distance(wrap(row + dr, rows), wrap(col + dc, cols));
+                    if (d >= 0 && (best < 0 || d < best))
+                        best = d;
+                }
+            }
+            return best < 0 ? -1 : best + 1;
+        }
+
+        private int local(int r, int c) {
+            int lr = r - top;
+            if (lr < 0) lr += rows;
+            int lc = c - left;
+            if (lc < 0) lc += cols;
+            return lr < height && lc < width ? lr * width + lc : -1;
+        }
+    }
+
+    private static int wrap(int x, int n) {
+        if (x < 0) return x + n;
+        if (x >= n) return x - n;
+        return x;
+    }
+}
@@ -0,0 +1,176 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Supplier;
+
+// Per-world state that the wolves of one world share with each other,
+// handed out to every PackAware wolf by the Wolves engine. Shared values
+// that implement Snapshottable are part of a snapshot of the world, under
+// the name of their key.
+public class Pack implements Snapshottable {
+
+    private final Map<Object, Object> shared = new LinkedHashMap<>();
+    private volatile long tick;
+    private int rows, cols;
+    private int[] wolfRow, wolfCol;
+    private long seed = new Random().nextLong();
+    private WolvesRandom[] random = new WolvesRandom[0];
+    private FlowFields flowFields;
+    private SpatialIndex wolfIndex;
+
+    // The tick the world is playing, starting at 1 for the first one
+    public long getTick() {
+        return tick;
+    }
+
+    void setTick(long tick) {
+        this.tick = tick;
+    }
+
+    void setBoard(int rows, int cols, int[] wolfRow, int[] wolfCol) {
+        this.rows = rows;
+        this.cols = cols;
+        this.wolfRow = wolfRow;
+        this.wolfCol = wolfCol;
+    }
+
+    // Derives the random streams of the wolves from the master seed of the
+    // world. Streams handed out already are seeded again in place, so the
+    // wolves that hold them draw under the new seed.
+    synchronized void setSeed(long seed, int numWolves) {
+        this.seed = seed;
+        for (int i = 0; i < random.length; i++)
+            random[i].setSeed(WolvesRandom.seed(seed, WolvesRandom.WOLVES + i));
+        if (numWolves > 0)
+            getRandom(numWolves - 1);
+    }
+
+    // The random generator of the given wolf, a stream of its own under the
+    // seed of the world; see WolvesRandom. Wolves that draw from it instead
+    // of Math.random or a Random of their own play the same game for the
+    // same seed, on any number of threads. A wolf must not draw from the
+    // stream of another one.
+    public synchronized WolvesRandom getRandom(int wolf) {
+        if (wolf >= random.length) {
+            int from = random.length;
+            random = Arrays.copyOf(random, wolf + 1);
+            for (int i = from; i <= wolf; i++)
+                random[i] = new WolvesRandom(WolvesRandom.seed(seed, WolvesRandom.WOLVES + i));
+        }
+        return random[wolf];
+    }
+
+    void setFlowFields(FlowFields flowFields) {
+        this.flowFields = flowFields;
+    }
+
+    // Distances to the preys on the board, computed once per prey and tick
+    // for the whole pack; null if the pack is not playing in a world
+    public FlowFields getFlowFields() {
+        return flowFields;
+    }
+
+    // Size of the board, 0 if the pack is not playing in a world
+    public int getNumbRows() {
+        return rows;
+    }
+
+    public int getNumbCols() {
+        return cols;
+    }
+
+    public int getNumbWolves() {
+        return wolfRow != null ? wolfRow.length : 0;
+    }
+
+    // Where the given wolf stands on the board, as an absolute position.
+    // What a wolf sees is relative to itself; this lets pack members share
+    // positions that mean the same to all of them.
+    public int getRow(int wolf) {
+        return wolfRow[wolf];
+    }
+
+    public int getCol(int wolf) {
+        return wolfCol[wolf];
+    }
+
+    void setWolfIndex(SpatialIndex wolfIndex) {
+        this.wolfIndex = wolfIndex;
+    }
+
+    // The wolves within Chebyshev distance radius of (row, col), and maybe
+    // some farther ones, in no particular order: writes their numbers into
+    // out, which must hold getNumbWolves() of them, and returns how many
+    // there are. Costs what the wolves near the cell cost, not the pack.
+    public int wolvesAround(int row, int col, int radius, int[] out) {
+        if (wolfIndex != null)
+            return wolfIndex.agentsAround(row, col, radius, out);
+        int n = getNumbWolves();
+        for (int w = 0; w < n; w++)
+            out[w] = w;
+        return n;
+    }
+
+    // Forgets the shared values, for a new game; see Wolves.reset
+    synchronized void clearShared() {
+        shared.clear();
+    }
+
+    // Returns the object stored under key, creating it on first use.
+    // Strategies typically use their own class as key, e.g.
+    //     board = pack.shared(BlackboardWolf.class, Board::new);
+    @SuppressWarnings("unchecked")
+    public synchronized <T> T shared(Object key, Supplier<T> init) {
+        Object value = shared.get(key);
+        if (value == null) {
+            value = init.get();
+            shared.put(key, value);
+        }
+        return (T) value;
+    }
+
+    @Override
+    public synchronized void save(DataOutput out) throws IOException {
+        out.writeLong(tick);
+        out.writeInt(random.length);
+        for (WolvesRandom r : random)
+            out.writeLong(r.getState());
+        int n = 0;
+        for (Object value : shared.values())
+            if (value instanceof Snapshottable)
+                n++;
+        out.writeInt(n);
+        for (Map.Entry<Object, Object> e : shared.entrySet()) {
+            if (e.getValue() instanceof Snapshottable) {
+                out.writeUTF(e.getKey().toString());
+                byte[] state = WolvesSnapshot.save((Snapshottable) e.getValue());
+                out.writeInt(state.length);
+                out.write(state);
+            }
+        }
+    }
+
+    // Restores the values this pack holds already, i.e. those the wolves
+    // created when they joined it; state of other keys is skipped
+    @Override
+    public synchronized void restore(DataInput in) throws IOException {
+        tick = in.readLong();
+        int streams = in.readInt();
+        for (int i = 0; i < streams; i++)
+            getRandom(i).setState(in.readLong());
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            String key = in.readUTF();
+            byte[] state = new byte[in.readInt()];
+            in.readFully(state);
+            for (Map.Entry<Object, Object> e : shared.entrySet()) {
+                if (e.getValue() instanceof Snapshottable && e.getKey().toString().equals(key))
+                    WolvesSnapshot.restore((Snapshottable) e.getValue(), state);
+            }
+        }
+    }
+}
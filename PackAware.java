@@ -0,0 +1,8 @@
+// Implemented by wolves that cooperate with the other wolves of their world.
+// The engine calls joinPack once per wolf, before the first tick, with the
+// Pack object of that world. Wolves of different worlds never share a Pack,
+// so many worlds can run side by side in one JVM.
+public interface PackAware {
+	public abstract void joinPack(Pack pack, int wolf);
+	// wolf is the index of this wolf in its world
+}
@@ -0,0 +1,210 @@
+// One byte per cell in a single array: two bits for what stands on the
+// cell and four for the number of wolves around it. Who stands there is
+// kept apart, in a small table per block of 64 cells that lists the
+// occupied cells of the block with their codes, so the board costs 1 byte
+// per cell plus a few per agent instead of the 8 of a DenseGrid, and the
+// common questions (is it empty, is it a wolf, how many wolves are around)
+// never leave the byte array.
+//
+// The cells are laid out either row after row, or in tiles of 8 x 8 cells,
+// one cache line each, with the tiles row after row. In tiles, the eight
+// neighbours of most cells lie in the cache line of the cell itself, where
+// row by row they lie in three, and a block is a tile.
+//
+// Writes to the block tables are not thread-safe, so this grid does not
+// take parallel preys; see Wolves.setParallelPreys.
+public class PackedGrid implements WolvesGrid {
+
+    private static final int COUNT = 0x0F;   // wolves on the 8 neighbours, at most 8
+    private static final int WOLF = 0x10;
+    private static final int PREY = 0x20;
+    private static final int TAKEN = WOLF | PREY;
+
+    private static final int BLOCK_SHIFT = 6;
+    private static final int BLOCK = 1 << BLOCK_SHIFT;
+
+    private static final int SHIFT = 3;
+    private static final int SIDE = 1 << SHIFT;
+
+    private final int rows, cols;
+    private final boolean tiled;
+    private final int tileRow;   // cells in a row of tiles
+    private final byte[] cells;
+    // Per block of 64 cells, null while it is empty: the number of occupied
+    // cells, then their offsets in the block and their codes, in pairs
+    private final int[][] blocks;
+    private long blockInts;
+
+    public PackedGrid(int rows, int cols) {
+        this(rows, cols, false);
+    }
+
+    public PackedGrid(int rows, int cols, boolean tiled) {
+        this.rows = rows;
+        this.cols = cols;
+        this.tiled = tiled;
+        long tileRowCells = (long) ((cols + SIDE - 1) >> SHIFT) << (2 * SHIFT);
+        long size = tiled ? ((rows + SIDE - 1) >> SHIFT) * tileRowCells : (long) rows * cols;
+        if (size > Integer.MAX_VALUE - 8)
+            throw new IllegalArgumentException(rows + " x " + cols + " is too large for a PackedGrid, use a SparseGrid");
+        tileRow = (int) tileRowCells;
+        cells = new byte[(int) size];
+        blocks = new int[(int) ((size + BLOCK - 1) >> BLOCK_SHIFT)][];
+    }
+
+    public boolean isTiled() {
+        return tiled;
+    }
+
+    // Bytes taken by the board and the block tables together, roughly
+    public long getBytes() {
+        return cells.length + 4L * blocks.length + 4 * blockInts;
+    }
+
+    @Override
+    public int getNumbRows() {
+        return rows;
+    }
+
+    @Override
+    public int getNumbCols() {
+        return cols;
+    }
+
+    // The index of a cell is a part that depends on its row plus one that
+    // depends on its column, in both layouts, so the neighbours of a cell
+    // take three of each
+    private int index(int row, int col) {
+        return rowPart(row) + colPart(col);
+    }
+
+    private int rowPart(int row) {
+        return tiled ? (row >> SHIFT) * tileRow + ((row & (SIDE - 1)) << SHIFT) : row * cols;
+    }
+
+    private int colPart(int col) {
+        return tiled ? ((col >> SHIFT) << (2 * SHIFT)) + (col & (SIDE - 1)) : col;
+    }
+
+    @Override
+    public int get(int row, int col) {
+        int i = index(row, col);
+        if ((cells[i] & TAKEN) == 0)
+            return 0;
+        int[] block = blocks[i >> BLOCK_SHIFT];
+        return block[find(block, i & (BLOCK - 1)) + 1];
+    }
+
+    @Override
+    public void set(int row, int col, int value) {
+        int i = index(row, col);
+        int[] block = blocks[i >> BLOCK_SHIFT];
+        boolean taken = (cells[i] & TAKEN) != 0;
+        if (value == 0) {
+            if (taken)
+                remove(block, find(block, i & (BLOCK - 1)));
+            cells[i] &= COUNT;
+            return;
+        }
+        if (taken)
+            block[find(block, i & (BLOCK - 1)) + 1] = value;
+        else
+            add(i, value);
+        cells[i] = (byte) ((cells[i] & COUNT) | (value % 2 == 1 ? WOLF : PREY));
+    }
+
+    // Within a block only the offset of the pair changes
+    @Override
+    public void move(int fromRow, int fromCol, int toRow, int toCol) {
+        int from = index(fromRow, fromCol), to = index(toRow, toCol);
+        int[] block = blocks[from >> BLOCK_SHIFT];
+        int k = find(block, from & (BLOCK - 1));
+        if (from >> BLOCK_SHIFT == to >> BLOCK_SHIFT) {
+            block[k] = to & (BLOCK - 1);
+        } else {
+            int value = block[k + 1];
+            remove(block, k);
+            add(to, value);
+        }
+        cells[to] = (byte) ((cells[to] & COUNT) | (cells[from] & TAKEN));
+        cells[from] &= COUNT;
+    }
+
+    private void add(int i, int value) {
+        int[] block = blocks[i >> BLOCK_SHIFT];
+        if (block == null || 2 * block[0] + 3 > block.length) {
+            int[] grown = new int[block == null ? 5 : 2 * block.length - 1];
+            if (block != null)
+                System.arraycopy(block, 0, grown, 0, block.length);
+            blockInts += grown.length - (block == null ? 0 : block.length);
+            blocks[i >> BLOCK_SHIFT] = block = grown;
+        }
+        int k = 2 * block[0] + 1;
+        block[k] = i & (BLOCK - 1);
+        block[k + 1] = value;
+        block[0]++;
+    }
+
+    // The last pair fills the gap
+    private static void remove(int[] block, int k) {
+        int last = 2 * block[0] - 1;
+        block[k] = block[last];
+        block[k + 1] = block[last + 1];
+        block[0]--;
+    }
+
+    // Where the pair of an occupied cell of the block starts
+    private static int find(int[] block, int offset) {
+        int k = 1;
+        while (block[k] != offset)
+            k += 2;
+        return k;
+    }
+
+    @Override
+    public boolean isWolf(int row, int col) {
+        return (cells[index(row, col)] & WOLF) != 0;
+    }
+
+    @Override
+    public boolean isPrey(int row, int col) {
+        return (cells[index(row, col)] & PREY) != 0;
+    }
+
+    @Override
+    public int adjacent(int row, int col) {
+        return cells[index(row, col)] & COUNT;
+    }
+
+    @Override
+    public void addAdjacent(int row, int col, int delta) {
+        cells[index(row, col)] += delta;   // the count never leaves 0..8, so it stays in its bits
+    }
+
+    @Override
+    public void addAdjacentAround(int row, int col, int delta) {
+        int up = rowPart(row == 0 ? rows - 1 : row - 1), here = rowPart(row), down = rowPart(row == rows - 1 ? 0 : row + 1);
+        int left = colPart(col == 0 ? cols - 1 : col - 1), mid = colPart(col), right = colPart(col == cols - 1 ? 0 : col + 1);
+        cells[up + left] += delta;
+        cells[up + mid] += delta;
+        cells[up + right] += delta;
+        cells[here + left] += delta;
+        cells[here + right] += delta;
+        cells[down + left] += delta;
+        cells[down + mid] += delta;
+        cells[down + right] += delta;
+    }
+
+    @Override
+    public int freeNeighbours(int row, int col) {
+        int up = rowPart(row == 0 ? rows - 1 : row - 1), here = rowPart(row), down = rowPart(row == rows - 1 ? 0 : row + 1);
+        int left = colPart(col == 0 ? cols - 1 : col - 1), mid = colPart(col), right = colPart(col == cols - 1 ? 0 : col + 1);
+        return free(up + left, 1) | free(up + mid, 2) | free(up + right, 4)
+             | free(here + left, 8) | free(here + right, 16)
+             | free(down + left, 32) | free(down + mid, 64) | free(down + right, 128);
+    }
+
+    private int free(int i, int bit) {
+        return (cells[i] & TAKEN) == 0 ? bit : 0;
+    }
+}
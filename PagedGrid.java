@@ -0,0 +1,103 @@
+// A grid cut into square pages of 32 x 32 cells that several grids can
+// share copy-on-write. fork() makes a new grid that starts out on the same
+// pages as this one, at the cost of a pointer per page; whichever grid
+// writes to a shared page first gets a private copy of it. A WolvesSnapshot
+// keeps one as the board to start forked worlds from, so a thousand forks
+// of one position only copy the pages their agents actually move on.
+public class PagedGrid implements WolvesGrid {
+
+    private static final int SHIFT = 5;
+    private static final int SIDE = 1 << SHIFT;
+    private static final int CELLS = SIDE * SIDE;   // a page holds the cells, then the wolf counts
+
+    private final int rows, cols;
+    private final int pagesPerRow;
+    private final int[][] pages;
+    private final boolean[] owned;   // whether pages[i] is ours alone to write
+
+    public PagedGrid(int rows, int cols) {
+        this.rows = rows;
+        this.cols = cols;
+        pagesPerRow = (cols + SIDE - 1) >> SHIFT;
+        pages = new int[((rows + SIDE - 1) >> SHIFT) * pagesPerRow][];
+        owned = new boolean[pages.length];
+        for (int i = 0; i < pages.length; i++) {
+            pages[i] = new int[2 * CELLS];
+            owned[i] = true;
+        }
+    }
+
+    private PagedGrid(PagedGrid source) {
+        rows = source.rows;
+        cols = source.cols;
+        pagesPerRow = source.pagesPerRow;
+        pages = source.pages.clone();
+        owned = new boolean[pages.length];
+    }
+
+    // A grid with the same content that shares all pages with this one;
+    // from now on both copy a page before they first write to it
+    public PagedGrid fork() {
+        for (int i = 0; i < owned.length; i++)
+            if (owned[i]) owned[i] = false;
+        return new PagedGrid(this);
+    }
+
+    // Pages this grid had to copy, or allocated itself
+    public int getOwnedPages() {
+        int n = 0;
+        for (boolean o : owned)
+            if (o) n++;
+        return n;
+    }
+
+    public int getPages() {
+        return pages.length;
+    }
+
+    @Override
+    public int getNumbRows() {
+        return rows;
+    }
+
+    @Override
+    public int getNumbCols() {
+        return cols;
+    }
+
+    @Override
+    public int get(int row, int col) {
+        return pages[page(row, col)][offset(row, col)];
+    }
+
+    @Override
+    public void set(int row, int col, int value) {
+        writable(page(row, col))[offset(row, col)] = value;
+    }
+
+    @Override
+    public int adjacent(int row, int col) {
+        return pages[page(row, col)][CELLS + offset(row, col)];
+    }
+
+    @Override
+    public void addAdjacent(int row, int col, int delta) {
+        writable(page(row, col))[CELLS + offset(row, col)] += delta;
+    }
+
+    private int page(int row, int col) {
+        return (row >> SHIFT) * pagesPerRow + (col >> SHIFT);
+    }
+
+    private static int offset(int row, int col) {
+        return ((row & (SIDE - 1)) << SHIFT) | (col & (SIDE - 1));
+    }
+
+    private int[] writable(int page) {
+        if (!owned[page]) {
+            pages[page] = pages[page].clone();
+            owned[page] = true;
+        }
+        return pages[page];
+    }
+}
@@ -0,0 +1,38 @@
+// How a prey picks its step. Each tick the engine reads the 8 neighbours of
+// every uncaptured prey once into a mask, bit d for direction d of
+// PreyStrips.DR/DC, and hands the policy the empty ones as free. The
+// policy returns one direction out of free, or -1 to stay where it is; it
+// is never asked when free is 0. world.safeNeighbours narrows free down to
+// the cells where the prey would not be captured right away, at the cost
+// of a look at each of them.
+//
+// random is a fresh random number for this prey and tick, the only source
+// of randomness a policy may use. A policy holds no state of its own, so
+// one instance can serve every world and, with Wolves.setParallelPreys,
+// every thread; with the world it may only read. Nothing should be
+// allocated, as this runs for every prey on every tick.
+public interface PreyPolicy {
+	public abstract int move(Wolves world, int prey, int free, long random);
+
+	// One of the set bits of mask, uniformly, in constant time; -1 for none
+	public static int pick(int mask, long random) {
+		if (mask == 0)
+			return -1;
+		int k = (int) (((random >>> 32) * Integer.bitCount(mask)) >>> 32);
+		return Select.NTH[(mask << 3) | k];
+	}
+
+	// The k-th set bit of every 8 bit mask, at mask * 8 + k
+	static final class Select {
+		static final byte[] NTH = new byte[256 * 8];
+
+		static {
+			for (int mask = 0; mask < 256; mask++) {
+				int k = 0;
+				for (int d = 0; d < 8; d++)
+					if ((mask & (1 << d)) != 0)
+						NTH[(mask << 3) | k++] = (byte) d;
+			}
+		}
+	}
+}
@@ -0,0 +1,227 @@
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntConsumer;
+
+// Domain-decomposed prey movement and capture checking for big worlds.
+// The torus is cut into horizontal strips of rows, and one fork-join task
+// per strip moves the preys that stand in it, in two phases:
+//
+//   1. every prey picks a target among its 8 neighbours that was free at
+//      the start of the tick, through the PreyPolicy of the world, and
+//      claims it; when several preys claim the same cell, the one with the
+//      lowest id wins;
+//   2. every prey that won its claim moves, the others stay where they are.
+//
+// The random number a prey gets only depends on the seed, the tick and the
+// prey id, the board only changes in phase 2, and claims are resolved by prey id, so the
+// outcome for a given seed is the same whatever the number of threads or
+// strips. It is not the same game as the serial mode of Wolves, where each
+// prey sees the moves of the preys before it.
+class PreyStrips {
+
+    // The 8 neighbours, in the order used for the direction codes
+    static final int[] DR = { -1, -1, -1,  0, 0,  1, 1, 1 };
+    static final int[] DC = { -1,  0,  1, -1, 1, -1, 0, 1 };
+
+    private final Wolves game;
+    private final DenseGrid grid;
+    private final int rows, cols;
+    private final int[] preyRow, preyCol;
+    private final ForkJoinPool pool;
+    private final int strips;
+    private long seed;
+
+    private final int[] stripStart;   // preys of strip s are stripPreys[stripStart[s] .. stripStart[s+1]-1]
+    private final int[] stripPreys;
+    private final int[] target;       // chosen cell of each prey as row * cols + col, -1 if none
+    private final AtomicIntegerArray claims;   // per cell, 1 + the lowest prey id that claimed it
+    private final boolean[] flags;    // per prey, moved or captured in the current phase
+    final int[] fromRow, fromCol;     // where each prey that moved this tick came from
+    private final long[] stuck;       // per strip, preys that did not pick a target during the last tick
+    private final long[] conflicts;   // per strip, claims lost to a lower prey during the last tick
+
+    PreyStrips(Wolves game, DenseGrid grid, int[] preyRow, int[] preyCol, ForkJoinPool pool, int strips, long seed) {
+        this.game = game;
+        this.grid = grid;
+        this.rows = grid.getNumbRows();
+        this.cols = grid.getNumbCols();
+        this.preyRow = preyRow;
+        this.preyCol = preyCol;
+        this.pool = pool;
+        this.strips = Math.max(1, Math.min(strips, rows));
+        this.seed = seed;
+        stripStart = new int[this.strips + 1];
+        stripPreys = new int[preyRow.length];
+        target = new int[preyRow.length];
+        claims = new AtomicIntegerArray(rows * cols);
+        flags = new boolean[preyRow.length];
+        fromRow = new int[preyRow.length];
+        fromCol = new int[preyRow.length];
+        stuck = new long[this.strips];
+        conflicts = new long[this.strips];
+    }
+
+    // For a world that carries on under another master seed, see Wolves.restore
+    void setSeed(long seed) {
+        this.seed = seed;
+    }
+
+    // Moves all uncaptured preys and writes the ids of those that moved, in
+    // increasing order, to moved. Returns how many did.
+    int movePreys(long tick, BitSet captured, int[] moved) {
+        // sort the uncaptured preys into their strips, keeping them in id order
+        Arrays.fill(stripStart, 0);
+        for (int i = 0; i < preyRow.length; i++)
+            if (!captured.get(i))
+                stripStart[strip(preyRow[i]) + 1]++;
+        for (int s = 0; s < strips; s++)
+            stripStart[s + 1] += stripStart[s];
+        int[] fill = stripStart.clone();
+        for (int i = 0; i < preyRow.length; i++)
+            if (!captured.get(i))
+                stripPreys[fill[strip(preyRow[i])]++] = i;
+
+        forEachStrip(s -> claimTargets(s, tick));
+        forEachStrip(this::applyMoves);
+
+        int n = 0;
+        for (int i = 0; i < preyRow.length; i++) {
+            if (flags[i]) {
+                flags[i] = false;
+                moved[n++] = i;
+            }
+        }
+        return n;
+    }
+
+    // Evaluates captured() for the given preys in parallel and returns, in
+    // the same order, those that are captured now
+    int checkCaptures(int[] candidates, int count, int[] out) {
+        int chunk = (count + strips - 1) / strips;
+        forEachStrip(s -> {
+            for (int k = s * chunk; k < Math.min(count, (s + 1) * chunk); k++) {
+                int p = candidates[k];
+                if (game.captured(preyRow[p], preyCol[p]))
+                    flags[p] = true;
+            }
+        });
+        int n = 0;
+        for (int k = 0; k < count; k++) {
+            int p = candidates[k];
+            if (flags[p]) {
+                flags[p] = false;
+                out[n++] = p;
+            }
+        }
+        return n;
+    }
+
+    // Preys that had no free neighbour, or whose policy chose to stay, during the last tick
+    long getStuck() {
+        long n = 0;
+        for (long s : stuck)
+            n += s;
+        return n;
+    }
+
+    // Preys that lost the cell they claimed to another prey during the last tick
+    long getConflicts() {
+        long n = 0;
+        for (long c : conflicts)
+            n += c;
+        return n;
+    }
+
+    private int strip(int row) {
+        return (int) ((long) row * strips / rows);
+    }
+
+    private void claimTargets(int s, long tick) {
+        PreyPolicy policy = game.getPreyPolicy();
+        long none = 0;
+        for (int k = stripStart[s]; k < stripStart[s + 1]; k++) {
+            int p = stripPreys[k];
+            target[p] = -1;
+            int free = grid.freeNeighbours(preyRow[p], preyCol[p]);
+            int d = free != 0 ? policy.move(game, p, free, mix(seed, tick, p, 0)) : -1;
+            if (d < 0 || (free & (1 << d)) == 0) {
+                none++;
+                continue;
+            }
+            int cell = game.rowWrap(preyRow[p], DR[d]) * cols + game.colWrap(preyCol[p], DC[d]);
+            target[p] = cell;
+            claims.accumulateAndGet(cell, p + 1, (old, mine) -> old == 0 ? mine : Math.min(old, mine));
+        }
+        stuck[s] = none;
+    }
+
+    // Targets were empty at the start of the tick and every one has a single
+    // winner, so the grid writes of different strips never touch the same cell.
+    // The winner, the lowest claimer, always moves and clears the claim again.
+    private void applyMoves(int s) {
+        long lost = 0;
+        for (int k = stripStart[s]; k < stripStart[s + 1]; k++) {
+            int p = stripPreys[k];
+            int cell = target[p];
+            if (cell < 0)
+                continue;
+            if (claims.get(cell) != p + 1) {
+                lost++;
+                continue;
+            }
+            claims.set(cell, 0);
+            fromRow[p] = preyRow[p];
+            fromCol[p] = preyCol[p];
+            grid.set(preyRow[p], preyCol[p], 0);
+            preyRow[p] = cell / cols;
+            preyCol[p] = cell % cols;
+            grid.set(preyRow[p], preyCol[p], p * 2 + 2);
+            flags[p] = true;
+        }
+        conflicts[s] = lost;
+    }
+
+    private void forEachStrip(IntConsumer work) {
+        pool.invoke(new Strips(0, strips, work));
+    }
+
+    @SuppressWarnings("serial")
+    private static class Strips extends RecursiveAction {
+        private final int from, to;
+        private final IntConsumer work;
+
+        Strips(int from, int to, IntConsumer work) {
+            this.from = from;
+            this.to = to;
+            this.work = work;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Strips(from, mid, work), new Strips(mid, to, work));
+            } else {
+                for (int s = from; s < to; s++)
+                    work.accept(s);
+            }
+        }
+    }
+
+    // SplitMix64 over (seed, tick, prey, attempt): a random number that is
+    // the same on any thread, without any generator state to share
+    static long mix(long seed, long tick, int prey, int attempt) {
+        long z = splitMix(seed + 0x9E3779B97F4A7C15L * (tick + 1));
+        z = splitMix(z + 0x9E3779B97F4A7C15L * (prey + 1));
+        return splitMix(z + attempt);
+    }
+
+    private static long splitMix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
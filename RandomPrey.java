@@ -0,0 +1,17 @@
+// The prey of the original game: a step to a random free neighbour,
+// avoiding the ones where it would be captured as long as there are others.
+// It draws from all free neighbours first and only works out which are safe
+// if the draw was not, so a prey in the open looks at one cell of the wolf
+// counts rather than eight; the step is uniform over the safe cells either way.
+public class RandomPrey implements PreyPolicy {
+
+    @Override
+    public int move(Wolves world, int prey, int free, long random) {
+        int row = world.getPreyRow(prey), col = world.getPreyCol(prey);
+        int d = PreyPolicy.pick(free, random);
+        if (!world.captured(world.rowWrap(row, PreyStrips.DR[d]), world.colWrap(col, PreyStrips.DC[d])))
+            return d;
+        int safe = world.safeNeighbours(row, col, free & ~(1 << d));
+        return safe != 0 ? PreyPolicy.pick(safe, random << 32) : d;
+    }
+}
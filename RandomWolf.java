@@ -1,15 +1,24 @@
 
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
-import java.util.Random;
 
-public class RandomWolf implements Wolf {
+public class RandomWolf implements Wolf, BufferedWolf, PackAware, Snapshottable {
+
+	// Its own generator until it joins a world, then the stream the world has for it
+	private WolvesRandom r = new WolvesRandom();
+
+	@Override
+	public void joinPack(Pack pack, int wolf) {
+		r = pack.getRandom(wolf);
+	}
 
 	@Override
 	public int[] moveAll(List<int[]> wolvesSight, List<int[]> preysSight) {
-		Random r = new Random();
 		int[] mymove = new int[2];
 		mymove[0] = r.nextInt(3)-1;
 		mymove[1] = r.nextInt(3)-1;
@@ -17,9 +26,28 @@ public class RandomWolf implements Wolf {
 	}
 	
 	public int moveLim(List<int[]> wolvesSight, List<int[]> preysSight) {
-		Random r = new Random();
 		return r.nextInt(4) + 1;
 	}
 
+	@Override
+	public void moveAll(WolfView view, int[] moves, int slot) {
+		moves[slot] = r.nextInt(3)-1;
+		moves[slot + 1] = r.nextInt(3)-1;
+	}
+
+	@Override
+	public int moveLim(WolfView view) {
+		return r.nextInt(4) + 1;
+	}
+
+	@Override
+	public void save(DataOutput out) throws IOException {
+		out.writeLong(r.getState());
+	}
+
+	@Override
+	public void restore(DataInput in) throws IOException {
+		r.setState(in.readLong());
+	}
 
 }
@@ -0,0 +1,148 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+// Where the wolves of one pack have seen preys lately, in absolute
+// coordinates on the torus, so that a sighting means the same to every
+// wolf whatever its own position. Every sighting adds heat to its cell,
+// and heat halves every halfLife ticks. Nothing is swept per tick: each
+// cell keeps the tick it was last touched at, and its heat is decayed
+// when it is read. A cell nobody touched for 4 half-lives counts as
+// empty. The map keeps a bounded number of cells; when it is full, the
+// coldest cell makes room for the new one.
+//
+// All methods are synchronized, as wolves of a pack may decide on
+// several threads at once, see Wolves.setParallelDecisions.
+public class SightingMap implements Snapshottable {
+
+    private final int rows, cols;
+    private final long[] cell;      // row * cols + col, -1 for a free slot
+    private final float[] heat;     // heat at the tick in stamp
+    private final long[] stamp;
+    private final float[] decay;    // decay[age] = 2^(-age / halfLife), for ages up to 4 half-lives
+
+    public SightingMap(int rows, int cols, int capacity, int halfLife) {
+        this.rows = rows;
+        this.cols = cols;
+        cell = new long[Math.max(1, capacity)];
+        heat = new float[cell.length];
+        stamp = new long[cell.length];
+        Arrays.fill(cell, -1);
+        decay = new float[4 * Math.max(1, halfLife) + 1];
+        for (int age = 0; age < decay.length; age++)
+            decay[age] = (float) Math.pow(0.5, age / (double) Math.max(1, halfLife));
+    }
+
+    // Adds a sighting of a prey at (row, col) during tick now
+    public synchronized void record(int row, int col, long now) {
+        long key = (long) row * cols + col;
+        int slot = -1;
+        int coldest = 0;
+        float coldestHeat = Float.MAX_VALUE;
+        for (int i = 0; i < cell.length; i++) {
+            if (cell[i] == key) {
+                slot = i;
+                break;
+            }
+            float h = heat(i, now);
+            if (h < coldestHeat) {
+                coldest = i;
+                coldestHeat = h;
+            }
+        }
+        if (slot < 0) {
+            slot = coldest;
+            cell[slot] = key;
+            heat[slot] = 0;
+        }
+        heat[slot] = heat(slot, now) + 1;
+        stamp[slot] = now;
+    }
+
+    // Forgets the cell, e.g. when a wolf got there and the prey was gone
+    public synchronized void forget(int row, int col) {
+        long key = (long) row * cols + col;
+        for (int i = 0; i < cell.length; i++) {
+            if (cell[i] == key) {
+                cell[i] = -1;
+                heat[i] = 0;
+            }
+        }
+    }
+
+    // The cell most worth heading for from (row, col) during tick now: the
+    // one with the most heat per step of Manhattan distance, among those at
+    // most radius away. Returns row * cols + col, or -1 if there is none.
+    public synchronized long best(int row, int col, int radius, long now) {
+        long best = -1;
+        float bestScore = 0;
+        for (int i = 0; i < cell.length; i++) {
+            float h = heat(i, now);
+            if (h == 0)
+                continue;
+            int d = distance(row, col, getRow(cell[i]), getCol(cell[i]));
+            if (d > radius)
+                continue;
+            float score = h / (1 + d);
+            if (score > bestScore) {
+                best = cell[i];
+                bestScore = score;
+            }
+        }
+        return best;
+    }
+
+    // Heat of the cell at (row, col) during tick now, 0 if nobody saw a prey there lately
+    public synchronized float heat(int row, int col, long now) {
+        long key = (long) row * cols + col;
+        for (int i = 0; i < cell.length; i++)
+            if (cell[i] == key)
+                return heat(i, now);
+        return 0;
+    }
+
+    @Override
+    public synchronized void save(DataOutput out) throws IOException {
+        out.writeInt(cell.length);
+        for (int i = 0; i < cell.length; i++) {
+            out.writeLong(cell[i]);
+            out.writeFloat(heat[i]);
+            out.writeLong(stamp[i]);
+        }
+    }
+
+    @Override
+    public synchronized void restore(DataInput in) throws IOException {
+        if (in.readInt() != cell.length)
+            throw new IOException("sighting map of another capacity");
+        for (int i = 0; i < cell.length; i++) {
+            cell[i] = in.readLong();
+            heat[i] = in.readFloat();
+            stamp[i] = in.readLong();
+        }
+    }
+
+    public int getRow(long cell) {
+        return (int) (cell / cols);
+    }
+
+    public int getCol(long cell) {
+        return (int) (cell % cols);
+    }
+
+    private float heat(int slot, long now) {
+        if (cell[slot] < 0)
+            return 0;
+        long age = now - stamp[slot];
+        if (age >= decay.length)
+            return 0;
+        return heat[slot] * decay[(int) Math.max(0, age)];
+    }
+
+    private int distance(int r0, int c0, int r1, int c1) {
+        int dr = Math.abs(r0 - r1);
+        int dc = Math.abs(c0 - c1);
+        return Math.min(dr, rows - dr) + Math.min(dc, cols - dc);
+    }
+}
@@ -0,0 +1,14 @@
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+// Implemented by wolves, and by state they share through a Pack, that want
+// their state to be part of a WolvesSnapshot. save writes everything the
+// object needs to carry on as if nothing happened; restore reads it back,
+// into a fresh object of the same class or into the one that saved it.
+// Wolves without it restart from whatever state they are in.
+public interface Snapshottable {
+	public abstract void save(DataOutput out) throws IOException;
+
+	public abstract void restore(DataInput in) throws IOException;
+}
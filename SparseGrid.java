@@ -0,0 +1,62 @@
+// Grid for huge boards with few agents, e.g. 100k x 100k cells and a few
+// thousand agents. Only occupied cells and cells next to a wolf are stored,
+// in two CellMaps, so memory grows with the number of agents and not with
+// the area of the board. Empty cells and zero counts are simply absent.
+public class SparseGrid implements WolvesGrid {
+
+    private final int rows, cols;
+    private final CellMap cells;
+    private final CellMap adjacentWolves;
+
+    public SparseGrid(int rows, int cols) {
+        this(rows, cols, 64);
+    }
+
+    // expectedAgents only sizes the initial tables; they grow as needed
+    public SparseGrid(int rows, int cols, int expectedAgents) {
+        this.rows = rows;
+        this.cols = cols;
+        cells = new CellMap(expectedAgents);
+        adjacentWolves = new CellMap(8 * expectedAgents);
+    }
+
+    private long key(int row, int col) {
+        return (long) row * cols + col;
+    }
+
+    @Override
+    public int getNumbRows() {
+        return rows;
+    }
+
+    @Override
+    public int getNumbCols() {
+        return cols;
+    }
+
+    @Override
+    public int get(int row, int col) {
+        return cells.get(key(row, col));
+    }
+
+    @Override
+    public void set(int row, int col, int value) {
+        cells.put(key(row, col), value);
+    }
+
+    @Override
+    public int adjacent(int row, int col) {
+        return adjacentWolves.get(key(row, col));
+    }
+
+    @Override
+    public void addAdjacent(int row, int col, int delta) {
+        long key = key(row, col);
+        adjacentWolves.put(key, adjacentWolves.get(key) + delta);
+    }
+
+    // Number of cells currently stored, for both maps together
+    public int size() {
+        return cells.size() + adjacentWolves.size();
+    }
+}
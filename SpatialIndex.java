@@ -0,0 +1,158 @@
+import java.util.Arrays;
+
+// Bucket grid over the torus for finding the agents near a cell without
+// looking at all of them. The board is cut into bucketRows x bucketCols
+// buckets of at least cellSize rows and columns each, so every cell within
+// Manhattan (or even Chebyshev) distance cellSize of a cell lies in the
+// bucket of that cell or in one of its 8 neighbouring buckets, wrapping
+// around the edges of the board just like rowWrap/colWrap do.
+//
+// Every bucket keeps a doubly linked list of agent ids in plain int arrays,
+// so moving an agent is O(1) and nothing is allocated after construction.
+// A query fills a caller-provided array with bucket numbers; the agents of
+// a bucket are then walked with head(bucket) and next(id):
+//
+//     int n = index.bucketsAround(row, col, radius, buckets);
+//     for (int b = 0; b < n; b++)
+//         for (int id = index.head(buckets[b]); id >= 0; id = index.next(id))
+//             ...
+public class SpatialIndex {
+
+    private final int rows, cols;
+    private final int bucketRows, bucketCols;
+    private final int[] head;       // first agent of each bucket, -1 if empty
+    private final int[] next;       // next agent in the same bucket, -1 at the end
+    private final int[] prev;       // previous agent in the same bucket, -1 at the start
+    private final int[] bucketOf;   // bucket of each agent, -1 if not indexed
+
+    // maxBuckets bounds the memory on huge, sparsely populated boards:
+    // buckets then simply get larger than cellSize.
+    public SpatialIndex(int rows, int cols, int cellSize, int capacity, int maxBuckets) {
+        this.rows = rows;
+        this.cols = cols;
+        int size = Math.max(1, cellSize);
+        int side = Math.max(1, (int) Math.sqrt(Math.max(1, maxBuckets)));
+        bucketRows = Math.max(1, Math.min(rows / size, side));
+        bucketCols = Math.max(1, Math.min(cols / size, side));
+        head = new int[bucketRows * bucketCols];
+        Arrays.fill(head, -1);
+        next = new int[capacity];
+        prev = new int[capacity];
+        bucketOf = new int[capacity];
+        Arrays.fill(bucketOf, -1);
+    }
+
+    public int bucket(int row, int col) {
+        int br = (int) ((long) row * bucketRows / rows);
+        int bc = (int) ((long) col * bucketCols / cols);
+        return br * bucketCols + bc;
+    }
+
+    // Empties the index, leaving it as it was built
+    public void clear() {
+        Arrays.fill(head, -1);
+        Arrays.fill(bucketOf, -1);
+    }
+
+    public void insert(int id, int row, int col) {
+        link(id, bucket(row, col));
+    }
+
+    public void remove(int id) {
+        if (bucketOf[id] >= 0)
+            unlink(id);
+    }
+
+    // Call after the agent went to (row, col); cheap if it stayed in its bucket
+    public void move(int id, int row, int col) {
+        int b = bucket(row, col);
+        if (b == bucketOf[id])
+            return;
+        unlink(id);
+        link(id, b);
+    }
+
+    public boolean contains(int id) {
+        return bucketOf[id] >= 0;
+    }
+
+    public int head(int bucket) {
+        return head[bucket];
+    }
+
+    public int next(int id) {
+        return next[id];
+    }
+
+    // Largest number of buckets bucketsAround can return for this radius
+    public int maxBucketsAround(int radius) {
+        return span(radius, rows, bucketRows) * span(radius, cols, bucketCols);
+    }
+
+    // Writes the distinct buckets holding all cells within Chebyshev distance
+    // radius of (row, col) into out and returns how many there are.
+    public int bucketsAround(int row, int col, int radius, int[] out) {
+        int spanR = span(radius, rows, bucketRows);
+        int spanC = span(radius, cols, bucketCols);
+        int br0 = (int) ((long) row * bucketRows / rows) - spanR / 2;
+        int bc0 = (int) ((long) col * bucketCols / cols) - spanC / 2;
+        if (spanR == bucketRows) br0 = 0;
+        if (spanC == bucketCols) bc0 = 0;
+        int n = 0;
+        for (int i = 0; i < spanR; i++) {
+            int br = Math.floorMod(br0 + i, bucketRows);
+            for (int j = 0; j < spanC; j++) {
+                out[n++] = br * bucketCols + Math.floorMod(bc0 + j, bucketCols);
+            }
+        }
+        return n;
+    }
+
+    // Writes the agents of the buckets bucketsAround would return into out
+    // and returns how many there are: every agent within Chebyshev distance
+    // radius of (row, col), and maybe some farther ones, in no particular order
+    public int agentsAround(int row, int col, int radius, int[] out) {
+        int spanR = span(radius, rows, bucketRows);
+        int spanC = span(radius, cols, bucketCols);
+        int br0 = (int) ((long) row * bucketRows / rows) - spanR / 2;
+        int bc0 = (int) ((long) col * bucketCols / cols) - spanC / 2;
+        if (spanR == bucketRows) br0 = 0;
+        if (spanC == bucketCols) bc0 = 0;
+        int n = 0;
+        for (int i = 0; i < spanR; i++) {
+            int br = Math.floorMod(br0 + i, bucketRows);
+            for (int j = 0; j < spanC; j++) {
+                for (int id = head[br * bucketCols + Math.floorMod(bc0 + j, bucketCols)]; id >= 0; id = next[id])
+                    out[n++] = id;
+            }
+        }
+        return n;
+    }
+
+    // Number of consecutive buckets along one axis that cover 2*radius+1 cells
+    private static int span(int radius, int cells, int buckets) {
+        int minSize = cells / buckets;   // every bucket is at least this wide
+        int reach = (radius + minSize - 1) / minSize;
+        return (int) Math.min(buckets, 2L * reach + 1);
+    }
+
+    private void link(int id, int b) {
+        bucketOf[id] = b;
+        prev[id] = -1;
+        next[id] = head[b];
+        if (head[b] >= 0)
+            prev[head[b]] = id;
+        head[b] = id;
+    }
+
+    private void unlink(int id) {
+        int b = bucketOf[id];
+        if (prev[id] >= 0)
+            next[prev[id]] = next[id];
+        else
+            head[b] = next[id];
+        if (next[id] >= 0)
+            prev[next[id]] = prev[id];
+        bucketOf[id] = -1;
+    }
+}
@@ -0,0 +1,44 @@
+// Everything that changed on the board during the last tick: the agents
+// that moved, from which cell to which cell, and the preys that got
+// captured. Wolves refills the same object every tick, so listeners that
+// want to keep anything must copy it in tickCompleted.
+//
+// Agents are given in the grid encoding: 2i+1 for wolf i, 2i+2 for prey i.
+public class TickDelta {
+
+    public int numMoves;
+    public final int[] agent;
+    public final int[] fromRow, fromCol;
+    public final int[] toRow, toCol;
+
+    public int numCaptures;
+    public final int[] captured;   // prey ids
+
+    public TickDelta(int numWolves, int numPreys) {
+        int n = numWolves + numPreys;
+        agent = new int[n];
+        fromRow = new int[n];
+        fromCol = new int[n];
+        toRow = new int[n];
+        toCol = new int[n];
+        captured = new int[numPreys];
+    }
+
+    void clear() {
+        numMoves = 0;
+        numCaptures = 0;
+    }
+
+    void move(int code, int fromR, int fromC, int toR, int toC) {
+        agent[numMoves] = code;
+        fromRow[numMoves] = fromR;
+        fromCol[numMoves] = fromC;
+        toRow[numMoves] = toR;
+        toCol[numMoves] = toC;
+        numMoves++;
+    }
+
+    void capture(int prey) {
+        captured[numCaptures++] = prey;
+    }
+}
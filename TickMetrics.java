@@ -0,0 +1,317 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+// Where the time of a tick goes. Wolves times every phase of tick() and
+// counts what happens in it, once metrics are set with Wolves.setMetrics;
+// without metrics the engine only pays for a null check per phase.
+//
+// Phase times are summed per tick and go into a histogram per phase, and
+// the time of every single decision goes into a histogram per Wolf class.
+// Every tick is also committed as a wolves.Tick JFR event that lasts as long
+// as the tick, which costs nothing unless a flight recording has that event
+// enabled:
+//
+//     java -XX:StartFlightRecording:filename=wolves.jfr WolvesTournament
+//     jfr print --events wolves.Tick wolves.jfr
+//
+// A TickMetrics is filled by the thread that ticks its world, except for
+// PAINT, which WolvesUI fills on the Swing thread. Read it, or merge it
+// into another one, once the run is over.
+public class TickMetrics {
+
+    public enum Phase {
+        PREYS,        // prey movement, serial or in strips
+        SHUFFLE,      // Fisher-Yates shuffle of the wolf order
+        PERCEPTION,   // filling the view of every wolf
+        DECISIONS,    // the strategies deciding, see getDecisions for the time per class
+        MOVES,        // applying the wolf moves
+        CAPTURES,     // looking for captured preys
+        LISTENERS,    // tickCompleted of the listeners, e.g. the UI marking cells
+        PAINT         // WolvesUI.paintComponent, once per frame rather than per tick
+    }
+
+    public enum Counter {
+        PREY_MOVES,        // preys that moved
+        PREYS_STUCK,       // preys that stayed put, boxed in or by choice of their PreyPolicy
+        PREY_CONFLICTS,    // preys that lost a claimed cell to another prey (parallel preys only)
+        WOLF_MOVES,        // wolves that wanted to move
+        BLOCKED_MOVES,     // of those, the ones that found their cell taken
+        CAPTURES,
+        MISSED_DECISIONS   // wolves that were too late, see Wolves.setParallelDecisions
+    }
+
+    private static final EventType TICK_EVENT = EventType.getEventType(TickEvent.class);
+
+    private final Histogram[] phases = new Histogram[Phase.values().length];
+    private final Histogram ticks = new Histogram();
+    private final Map<String, Histogram> decisions = new LinkedHashMap<>();
+    private final long[] counters = new long[Counter.values().length];
+
+    // The tick being measured
+    private final long[] current = new long[Phase.values().length];
+    private long tickStart;
+    private TickEvent event;   // null unless a recording has wolves.Tick enabled
+
+    public TickMetrics() {
+        for (int i = 0; i < phases.length; i++)
+            phases[i] = new Histogram();
+    }
+
+    // Time per tick spent in the given phase, in nanoseconds
+    public Histogram getPhase(Phase phase) {
+        return phases[phase.ordinal()];
+    }
+
+    // Time per tick, in nanoseconds
+    public Histogram getTicks() {
+        return ticks;
+    }
+
+    // Time per decision of every Wolf class, in nanoseconds
+    public synchronized Map<String, Histogram> getDecisions() {
+        return new LinkedHashMap<>(decisions);
+    }
+
+    public long getCount(Counter counter) {
+        return counters[counter.ordinal()];
+    }
+
+    synchronized Histogram decisionsOf(String wolfClass) {
+        return decisions.computeIfAbsent(wolfClass, k -> new Histogram());
+    }
+
+    long startTick() {
+        if (TICK_EVENT.isEnabled()) {
+            event = new TickEvent();
+            event.begin();
+        }
+        tickStart = System.nanoTime();
+        return tickStart;
+    }
+
+    // Adds the time from since to now to the phase, and returns now
+    long lap(Phase phase, long since) {
+        long now = System.nanoTime();
+        current[phase.ordinal()] += now - since;
+        return now;
+    }
+
+    // Same as lap for a single decision of a wolf of the class of decisions
+    long decision(Histogram decisions, long since) {
+        long now = System.nanoTime();
+        decisions.record(now - since);
+        current[Phase.DECISIONS.ordinal()] += now - since;
+        return now;
+    }
+
+    // A decision taken on another thread, whose time does not add to the
+    // tick; the tick only waits for the slowest one
+    void decided(Histogram decisions, long nanos) {
+        decisions.record(nanos);
+    }
+
+    void count(Counter counter, long n) {
+        counters[counter.ordinal()] += n;
+    }
+
+    void endTick(long tick) {
+        ticks.record(System.nanoTime() - tickStart);
+        for (int i = 0; i < phases.length; i++) {
+            if (i != Phase.PAINT.ordinal())
+                phases[i].record(current[i]);
+        }
+        if (event != null) {
+            event.tick = tick;
+            event.preys = current[Phase.PREYS.ordinal()];
+            event.shuffle = current[Phase.SHUFFLE.ordinal()];
+            event.perception = current[Phase.PERCEPTION.ordinal()];
+            event.decisions = current[Phase.DECISIONS.ordinal()];
+            event.moves = current[Phase.MOVES.ordinal()];
+            event.captures = current[Phase.CAPTURES.ordinal()];
+            event.listeners = current[Phase.LISTENERS.ordinal()];
+            event.commit();
+            event = null;
+        }
+        Arrays.fill(current, 0);
+    }
+
+    void paint(long nanos) {
+        phases[Phase.PAINT.ordinal()].record(nanos);
+    }
+
+    // Adds what other measured to this, e.g. to sum up the worlds of a tournament
+    public synchronized void merge(TickMetrics other) {
+        for (int i = 0; i < phases.length; i++)
+            phases[i].merge(other.phases[i]);
+        ticks.merge(other.ticks);
+        for (Map.Entry<String, Histogram> e : other.getDecisions().entrySet())
+            decisionsOf(e.getKey()).merge(e.getValue());
+        for (int i = 0; i < counters.length; i++)
+            counters[i] += other.counters[i];
+    }
+
+    // Writes CSV if the file name ends in .csv, JSON otherwise
+    public void dump(String file) throws IOException {
+        try (Writer out = new FileWriter(file)) {
+            if (file.endsWith(".csv"))
+                writeCsv(out);
+            else
+                writeJson(out);
+        }
+    }
+
+    // One line per histogram and per counter; times in nanoseconds
+    public void writeCsv(Writer out) throws IOException {
+        out.write("kind,name,count,total,mean,p50,p90,p99,max\n");
+        csv(out, "tick", "tick", ticks);
+        for (Phase p : Phase.values())
+            csv(out, "phase", p.name().toLowerCase(), getPhase(p));
+        for (Map.Entry<String, Histogram> e : getDecisions().entrySet())
+            csv(out, "decision", e.getKey(), e.getValue());
+        for (Counter c : Counter.values())
+            out.write("counter," + c.name().toLowerCase() + "," + getCount(c) + ",,,,,,\n");
+    }
+
+    private static void csv(Writer out, String kind, String name, Histogram h) throws IOException {
+        out.write(String.format(Locale.ROOT, "%s,%s,%d,%d,%.1f,%d,%d,%d,%d\n", kind, name, h.getCount(), h.getTotal(),
+                h.getMean(), h.getPercentile(0.5), h.getPercentile(0.9), h.getPercentile(0.99), h.getMax()));
+    }
+
+    public void writeJson(Writer out) throws IOException {
+        out.write("{\n  \"tick\": " + json(ticks) + ",\n  \"phases\": {");
+        String sep = "\n";
+        for (Phase p : Phase.values()) {
+            out.write(sep + "    \"" + p.name().toLowerCase() + "\": " + json(getPhase(p)));
+            sep = ",\n";
+        }
+        out.write("\n  },\n  \"decisions\": {");
+        sep = "\n";
+        for (Map.Entry<String, Histogram> e : getDecisions().entrySet()) {
+            out.write(sep + "    \"" + e.getKey() + "\": " + json(e.getValue()));
+            sep = ",\n";
+        }
+        out.write("\n  },\n  \"counters\": {");
+        sep = "\n";
+        for (Counter c : Counter.values()) {
+            out.write(sep + "    \"" + c.name().toLowerCase() + "\": " + getCount(c));
+            sep = ",\n";
+        }
+        out.write("\n  }\n}\n");
+    }
+
+    private static String json(Histogram h) {
+        return String.format(Locale.ROOT, "{\"count\": %d, \"total\": %d, \"mean\": %.1f, \"p50\": %d, \"p90\": %d, \"p99\": %d, \"max\": %d}",
+                h.getCount(), h.getTotal(), h.getMean(), h.getPercentile(0.5), h.getPercentile(0.9),
+                h.getPercentile(0.99), h.getMax());
+    }
+
+    // A histogram of non-negative longs in a fixed number of buckets: exact
+    // below 16, and 8 buckets per power of two above, so every value is
+    // known within 12.5%. Recording is a few shifts and an array increment.
+    public static class Histogram {
+        private static final int BUCKETS = 16 + 60 * 8;
+
+        private final long[] counts = new long[BUCKETS];
+        private long count, total, max;
+
+        void record(long value) {
+            value = Math.max(0, value);
+            counts[bucket(value)]++;
+            count++;
+            total += value;
+            if (value > max)
+                max = value;
+        }
+
+        void merge(Histogram other) {
+            for (int i = 0; i < BUCKETS; i++)
+                counts[i] += other.counts[i];
+            count += other.count;
+            total += other.total;
+            max = Math.max(max, other.max);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getTotal() {
+            return total;
+        }
+
+        public long getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count == 0 ? 0 : total / (double) count;
+        }
+
+        // p in [0,1]; the upper end of the bucket holding the nearest-rank
+        // percentile, never more than the largest value recorded
+        public long getPercentile(double p) {
+            long rank = Math.max(1, (long) Math.ceil(p * count));
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(max, upper(i));
+            }
+            return max;
+        }
+
+        private static int bucket(long value) {
+            if (value < 16)
+                return (int) value;
+            int exp = 63 - Long.numberOfLeadingZeros(value);
+            int sub = (int) (value >>> (exp - 3)) & 7;
+            return 16 + (exp - 4) * 8 + sub;
+        }
+
+        private static long upper(int bucket) {
+            if (bucket < 16)
+                return bucket;
+            int exp = (bucket - 16) / 8 + 4;
+            int sub = (bucket - 16) % 8;
+            return ((8L + sub + 1) << (exp - 3)) - 1;
+        }
+    }
+
+    @Name("wolves.Tick")
+    @Label("Wolves Tick")
+    @Category("Wolves")
+    @Description("Time spent in the phases of one tick of a Wolves world")
+    @StackTrace(false)
+    static class TickEvent extends Event {
+        @Label("Tick")
+        long tick;
+        @Label("Preys") @Timespan(Timespan.NANOSECONDS)
+        long preys;
+        @Label("Shuffle") @Timespan(Timespan.NANOSECONDS)
+        long shuffle;
+        @Label("Perception") @Timespan(Timespan.NANOSECONDS)
+        long perception;
+        @Label("Decisions") @Timespan(Timespan.NANOSECONDS)
+        long decisions;
+        @Label("Moves") @Timespan(Timespan.NANOSECONDS)
+        long moves;
+        @Label("Captures") @Timespan(Timespan.NANOSECONDS)
+        long captures;
+        @Label("Listeners") @Timespan(Timespan.NANOSECONDS)
+        long listeners;
+    }
+}
@@ -0,0 +1,50 @@
+import java.util.ArrayList;
+import java.util.List;
+
+// Lets a plain Wolf play through the BufferedWolf interface by copying
+// the view into the lists it expects. This allocates just like the old
+// engine did, so it is only meant for strategies not yet ported.
+public class WolfAdapter implements BufferedWolf, PackAware {
+
+    private final Wolf wolf;
+
+    public WolfAdapter(Wolf wolf) {
+        this.wolf = wolf;
+    }
+
+    public Wolf getWolf() {
+        return wolf;
+    }
+
+    @Override
+    public void joinPack(Pack pack, int id) {
+        if (wolf instanceof PackAware)
+            ((PackAware) wolf).joinPack(pack, id);
+    }
+
+    @Override
+    public void moveAll(WolfView view, int[] moves, int slot) {
+        int[] move = wolf.moveAll(wolvesSight(view), preysSight(view));
+        moves[slot] = move[0];
+        moves[slot + 1] = move[1];
+    }
+
+    @Override
+    public int moveLim(WolfView view) {
+        return wolf.moveLim(wolvesSight(view), preysSight(view));
+    }
+
+    private static List<int[]> wolvesSight(WolfView view) {
+        List<int[]> wolves = new ArrayList<>(view.numWolves);
+        for (int i = 0; i < view.numWolves; i++)
+            wolves.add(new int[]{view.wolfRows[i], view.wolfCols[i]});
+        return wolves;
+    }
+
+    private static List<int[]> preysSight(WolfView view) {
+        List<int[]> preys = new ArrayList<>(view.numPreys);
+        for (int i = 0; i < view.numPreys; i++)
+            preys.add(new int[]{view.preyRows[i], view.preyCols[i]});
+        return preys;
+    }
+}
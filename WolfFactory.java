@@ -0,0 +1,124 @@
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+
+// Builds lineups of any size from a mix of strategies. Strategies are
+// registered by name with a constructor, so every wolf of a lineup is a
+// fresh instance with state of its own:
+//
+//     Wolf[] lineup = WolfFactory.parse("blackboard:2,encircle:1").lineup(3000);
+//
+// gives 2000 BlackboardWolf and 1000 EncircleWolf. Your own wolves can be
+// added with register, e.g. WolfFactory.register("mine", MyWolf::new), and
+// are then available wherever the tools take a strategy name.
+public class WolfFactory {
+
+    private static final Map<String, Supplier<Wolf>> strategies = new LinkedHashMap<>();
+
+    static {
+        register("blackboard", BlackboardWolf::new);
+        register("encircle", EncircleWolf::new);
+        register("random", RandomWolf::new);
+    }
+
+    public static synchronized void register(String name, Supplier<Wolf> strategy) {
+        strategies.put(name, strategy);
+    }
+
+    public static synchronized Set<String> getNames() {
+        return Collections.unmodifiableSet(new LinkedHashSet<>(strategies.keySet()));
+    }
+
+    // A new wolf of the given strategy
+    public static synchronized Wolf create(String name) {
+        Supplier<Wolf> strategy = strategies.get(name);
+        if (strategy == null)
+            throw new IllegalArgumentException("unknown strategy " + name);
+        return strategy.get();
+    }
+
+    private final List<String> names = new ArrayList<>();
+    private final List<Integer> weights = new ArrayList<>();
+
+    // An empty mix; add strategies with add
+    public WolfFactory() {
+    }
+
+    // A mix of "name:weight,name:weight,..."; a name alone has weight 1
+    public static WolfFactory parse(String mix) {
+        WolfFactory factory = new WolfFactory();
+        for (String part : mix.split(",")) {
+            int colon = part.indexOf(':');
+            if (colon < 0)
+                factory.add(part.trim(), 1);
+            else
+                factory.add(part.substring(0, colon).trim(), Integer.parseInt(part.substring(colon + 1).trim()));
+        }
+        return factory;
+    }
+
+    public WolfFactory add(String name, int weight) {
+        synchronized (WolfFactory.class) {
+            if (!strategies.containsKey(name))
+                throw new IllegalArgumentException("unknown strategy " + name);
+        }
+        if (weight < 1)
+            throw new IllegalArgumentException("weight of " + name + " must be positive");
+        names.add(name);
+        weights.add(weight);
+        return this;
+    }
+
+    // n wolves, the strategies in proportion to their weights and in the
+    // order they were added. Shares that do not come out even are rounded
+    // by largest remainder, earlier strategies first on a tie.
+    public Wolf[] lineup(int n) {
+        if (names.isEmpty())
+            throw new IllegalStateException("no strategies in the mix");
+        long total = 0;
+        for (int w : weights)
+            total += w;
+        int[] counts = new int[names.size()];
+        long[] remainders = new long[names.size()];
+        int assigned = 0;
+        for (int i = 0; i < counts.length; i++) {
+            long share = (long) n * weights.get(i);
+            counts[i] = (int) (share / total);
+            remainders[i] = share % total;
+            assigned += counts[i];
+        }
+        while (assigned < n) {
+            int best = 0;
+            for (int i = 1; i < counts.length; i++)
+                if (remainders[i] > remainders[best])
+                    best = i;
+            counts[best]++;
+            remainders[best] = -1;
+            assigned++;
+        }
+        Wolf[] wolves = new Wolf[n];
+        int k = 0;
+        for (int i = 0; i < counts.length; i++) {
+            Supplier<Wolf> strategy;
+            synchronized (WolfFactory.class) {
+                strategy = strategies.get(names.get(i));
+            }
+            for (int j = 0; j < counts[i]; j++)
+                wolves[k++] = strategy.get();
+        }
+        return wolves;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < names.size(); i++)
+            sb.append(i > 0 ? "," : "").append(names.get(i)).append(':').append(weights.get(i));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,25 @@
+// What one wolf sees in one tick, as flat int arrays that the engine
+// refills for every wolf instead of allocating lists of int[] pairs.
+// Entry i of the wolves is (wolfRows[i], wolfCols[i]) for i < numWolves,
+// relative to the observing wolf, in the same form (and the same random
+// order) as Wolves.getWolfViewW; likewise for the preys and getWolfViewP.
+//
+// The arrays are owned by the engine and overwritten on the next call,
+// so a strategy must copy anything it wants to keep.
+public class WolfView {
+
+    public int numWolves;
+    public final int[] wolfRows;
+    public final int[] wolfCols;
+
+    public int numPreys;
+    public final int[] preyRows;
+    public final int[] preyCols;
+
+    public WolfView(int maxWolves, int maxPreys) {
+        wolfRows = new int[maxWolves];
+        wolfCols = new int[maxWolves];
+        preyRows = new int[maxPreys];
+        preyCols = new int[maxPreys];
+    }
+}
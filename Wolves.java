@@ -1,121 +1,483 @@
-import javax.swing.*;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
-public class Wolves {
+public class Wolves implements WolvesBoard {
+
+    // The wolves of a world built with a number of wolves rather than a lineup.
+    // Register your own strategy with WolfFactory and put it in here.
+    private static final WolfFactory DEFAULT_WOLVES = new WolfFactory().add("blackboard", 1);
 
     private int numWolves;
     private int numPreys;
     private int visibility;
+    private int wolfVisibility = -1;   // how far wolves see each other, -1 for the whole board
     private int minCaptured;
     private int min_surround;
-    public int[][] grid;
+    private WolvesGrid grid;
     private int rows, cols;
     private int[] wolfRow = new int[numWolves];
     private int[] wolfCol = new int[numWolves];
     private int[] preyRow = new int[numPreys];
     private int[] preyCol = new int[numPreys];
     private Wolf[] wolves = new Wolf[numWolves];
-    private List<Integer> capturedList = new ArrayList<>();
-    private Random r = new Random();
-    private WolvesUI visuals;
+    private BufferedWolf[] strategies;   // wolves[i], or an adapter around it
+    private WolfView view;
+    private int[] moves;                 // row and col move of wolf i at 2*i and 2*i+1
+
+    // Concurrent decision mode, see setParallelDecisions
+    private ExecutorService decisionPool;
+    private long decisionBudget;
+    private WolfView[] views;
+    private int[][] decisions;
+    private Future<?>[] pending;
+    private AtomicIntegerArray busy;   // per wolf: 0 idle, -1 deciding, else queued in that tick
+    private int[] capturedList;       // in order of capture, numCaptured of them
+    private long[] captureTicks;      // tick on which capturedList[i] was caught
+    private int numCaptured;
+    private BitSet capturedSet = new BitSet();
+    private int[] movedPreys;         // preys that moved this tick
+    private int numMovedPreys;
+    private int[] candidates;         // preys that may have been captured this tick
+    private TickDelta delta;          // what changed during the last tick
+    private PreyStrips preyStrips;    // null unless preys move in parallel
+    private PreyPolicy preyPolicy = new RandomPrey();
+    private long seed;          // the master seed, see WolvesRandom
+    private WolvesRandom r;     // the stream of the engine
+    private Pack pack = new Pack();
+    private FlowFields flowFields;   // for the pack, see Pack.getFlowFields
+    private CellSampler cells;       // kept by reset for the next game
+    private List<WolvesListener> listeners = new ArrayList<>();
     private long tickcounter = 0;
     private int[] index;
 
+    // Buckets of wolves and uncaptured preys, for the perception queries
+    private SpatialIndex wolfIndex;
+    private SpatialIndex preyIndex;
+    private int[] buckets;
+    private boolean gameOver = false;
+
+    // Zobrist hash of where every agent stands and which preys are captured,
+    // and the stalemate detection on top of it; see setStalemate
+    private static final long ZOBRIST = 0x5A0B819D2C7E4F31L;
+    private long stateHash;
+    private long noCaptureWindow;   // 0 for none
+    private long[] history;         // ring of the last state hashes, null for none
+    private int historySize, historyNext;
+    private int maxRepeats;
+    private int repeats;            // ticks in a row that came back to a state in the history
+    private long lastProgress;      // tick of the last capture, or of the start of detection
+    private boolean stalemate;
+    private int[] givenMoves;   // during tick(int[]) only
+
+    // Per-wolf statistics, reported through WolvesResult
+    private long[] wolfMoves;
+    private long[] wolfBlocked;
+    private long[] wolfAssists;
+    private long[] wolfMissed;
+
+    // Timings and counters, see setMetrics; null when not measuring
+    private TickMetrics metrics;
+    private TickMetrics.Histogram[] decisionTimes;   // of the class of wolf i
+    private long[] decisionNanos;                     // of the last concurrent decision of wolf i
+    private int preysStuck;
+
     public Wolves(int rows, int cols, int numWolves, int numPreys, int visibility, int minCaptured, int min_surround) {
-        this.rows = rows;
-        this.cols = cols;
-        this.numWolves = numWolves;
+        this(new DenseGrid(rows, cols), DEFAULT_WOLVES.lineup(numWolves), numPreys, visibility, minCaptured, min_surround,
+                new Random().nextLong());
+    }
+
+    // A world with a given lineup of wolves and a seeded random generator: two worlds
+    // built with the same seed play exactly the same game, as long as their wolves
+    // only draw from Pack.getRandom.
+    public Wolves(int rows, int cols, Wolf[] lineup, int numPreys, int visibility, int minCaptured, int min_surround, long seed) {
+        this(new DenseGrid(rows, cols), lineup, numPreys, visibility, minCaptured, min_surround, seed);
+    }
+
+    // A world on a grid of your choice, e.g. a SparseGrid for huge boards
+    public Wolves(WolvesGrid grid, Wolf[] lineup, int numPreys, int visibility, int minCaptured, int min_surround, long seed) {
+        this.grid = grid;
+        this.rows = grid.getNumbRows();
+        this.cols = grid.getNumbCols();
+        this.numWolves = lineup.length;
         this.numPreys = numPreys;
         this.visibility = visibility;
         this.minCaptured = minCaptured;
         this.min_surround = min_surround;
-        grid = new int[rows][cols];
+        this.seed = seed;
+        this.r = new WolvesRandom(seed);
+        makeArrays();
+        placeAgents(new CellSampler((long) rows * cols, r, numWolves + numPreys));
+        System.arraycopy(lineup, 0, wolves, 0, numWolves);
+        start();
+        hashState();
+        // Prepare the index array for suffling the wolves later
+        for (int j = 0; j < numWolves; j++) {
+            index[j] = j;
+        }
+    }
+
+    // A world that carries on from a snapshot, see WolvesSnapshot.fork
+    Wolves(WolvesSnapshot s, Wolf[] lineup) {
+        if (lineup.length != s.numWolves)
+            throw new IllegalArgumentException("the snapshot has " + s.numWolves + " wolves, not " + lineup.length);
+        PagedGrid board = s.board();
+        this.grid = board != null ? board.fork() : new SparseGrid(s.rows, s.cols, s.numWolves + s.numPreys);
+        this.rows = s.rows;
+        this.cols = s.cols;
+        this.numWolves = s.numWolves;
+        this.numPreys = s.numPreys;
+        this.visibility = s.visibility;
+        this.wolfVisibility = s.wolfVisibility;
+        this.minCaptured = s.minCaptured;
+        this.min_surround = s.min_surround;
+        this.seed = s.seed;
+        this.r = new WolvesRandom(seed);
+        makeArrays();
+        if (board == null) {
+            for (int i = 0; i < numWolves; i++) {
+                grid.set(s.wolfRow[i], s.wolfCol[i], i * 2 + 1);
+                addAdjacent(s.wolfRow[i], s.wolfCol[i], 1);
+            }
+            for (int i = 0; i < numPreys; i++)
+                grid.set(s.preyRow[i], s.preyCol[i], i * 2 + 2);
+        }
+        System.arraycopy(lineup, 0, wolves, 0, numWolves);
+        copyState(s);
+        start();
+        restoreStrategies(s);
+        hashState();
+    }
+
+    // Every agent gets a cell no other agent was given, so placing them
+    // takes the same time on an empty and on a crowded board
+    private void placeAgents(CellSampler cells) {
+        for (int i = 0; i < numWolves; i++) {
+            long cell = place(cells, false);
+            wolfRow[i] = (int) (cell / cols);
+            wolfCol[i] = (int) (cell % cols);
+            grid.set(wolfRow[i], wolfCol[i], i * 2 + 1);
+            addAdjacent(wolfRow[i], wolfCol[i], 1);
+        }
+        for (int i = 0; i < numPreys; i++) {
+            long cell = place(cells, true);
+            preyRow[i] = (int) (cell / cols);
+            preyCol[i] = (int) (cell % cols);
+            grid.set(preyRow[i], preyCol[i], i * 2 + 2);
+        }
+    }
 
+    // Starts a new game under the given seed, the very game a new world of
+    // the same size, lineup and settings would play, but on the board,
+    // arrays and indexes of this one: the agents are placed again and the
+    // wolves join the pack again, so a reset allocates next to nothing.
+    // Listeners, metrics and the modes of the world stay as they are, and
+    // wolves keep what they hold outside the pack, as they would in a new
+    // world with the same lineup.
+    public void reset(long seed) {
+        for (int i = 0; i < numWolves; i++) {
+            grid.set(wolfRow[i], wolfCol[i], 0);
+            addAdjacent(wolfRow[i], wolfCol[i], -1);
+        }
+        for (int i = 0; i < numPreys; i++)
+            grid.set(preyRow[i], preyCol[i], 0);
+        this.seed = seed;
+        r.setSeed(seed);
+        if (cells == null)
+            cells = new CellSampler((long) rows * cols, r, numWolves + numPreys);
+        else
+            cells.reset();
+        placeAgents(cells);
+
+        tickcounter = 0;
+        gameOver = false;
+        stalemate = false;
+        numCaptured = 0;
+        capturedSet.clear();
+        Arrays.fill(wolfMoves, 0);
+        Arrays.fill(wolfBlocked, 0);
+        Arrays.fill(wolfAssists, 0);
+        Arrays.fill(wolfMissed, 0);
+        for (int j = 0; j < numWolves; j++)
+            index[j] = j;
+        // Filled in the order of a new world, which is the order agents are seen in
+        preyIndex.clear();
+        for (int i = 0; i < numPreys; i++)
+            preyIndex.insert(i, preyRow[i], preyCol[i]);
+        wolfIndex.clear();
+        for (int i = 0; i < numWolves; i++)
+            wolfIndex.insert(i, wolfRow[i], wolfCol[i]);
+        delta.clear();
+        flowFields.clear();
+
+        pack.setTick(0);
+        pack.setSeed(seed, numWolves);
+        pack.clearShared();
+        joinPack();
+        if (preyStrips != null)
+            preyStrips.setSeed(WolvesRandom.seed(seed, WolvesRandom.PREYS));
+        hashState();
+    }
+
+    private void makeArrays() {
         wolfRow = new int[numWolves];
         wolfCol = new int[numWolves];
         preyRow = new int[numPreys];
         preyCol = new int[numPreys];
         wolves = new Wolf[numWolves];
+        wolfMoves = new long[numWolves];
+        wolfBlocked = new long[numWolves];
+        wolfAssists = new long[numWolves];
+        wolfMissed = new long[numWolves];
+        movedPreys = new int[numPreys];
+        capturedList = new int[numPreys];
+        captureTicks = new long[numPreys];
+        candidates = new int[numPreys + 9 * numWolves];
+        delta = new TickDelta(numWolves, numPreys);
+        index = new int[numWolves];
+    }
 
+    // Builds the indexes and lets the wolves join the pack, once the agents
+    // are on the board
+    private void start() {
+        indexPreys();
+        indexWolves();
+        // Wolves that cooperate get the shared state of this world
+        pack.setBoard(rows, cols, wolfRow, wolfCol);
+        pack.setSeed(seed, numWolves);
+        flowFields = new FlowFields(grid, visibility + 3);
+        pack.setFlowFields(flowFields);
+        strategies = new BufferedWolf[numWolves];
         for (int i = 0; i < numWolves; i++) {
-            do {
-                wolfRow[i] = r.nextInt(rows);
-                wolfCol[i] = r.nextInt(cols);
-            } while (!empty(wolfRow[i], wolfCol[i]));
-            grid[wolfRow[i]][wolfCol[i]] = i * 2 + 1;
+            if (wolves[i] instanceof BufferedWolf)
+                strategies[i] = (BufferedWolf) wolves[i];
+            else
+                strategies[i] = new WolfAdapter(wolves[i]);
         }
-        for (int i = 0; i < numPreys; i++) {
+        joinPack();
+        view = new WolfView(Math.max(0, numWolves - 1), numPreys);
+        moves = new int[2 * numWolves];
+    }
 
-            int preyR;
-            int preyC;
-            do {
-                preyR = r.nextInt(rows);
-                preyC = r.nextInt(cols);
-            } while (!empty(preyR, preyC)
-                    || captured(preyR, preyC));
-            preyRow[i] = preyR;
-            preyCol[i] = preyC;
-            grid[preyR][preyC] = i * 2 + 2;
-        }
-        initWolves();
-        // Prepare the index array for suffling the wolves later
-        index = new int[numWolves];
-        for (int j = 0; j < numWolves; j++) {
-            index[j] = j;
+    private void joinPack() {
+        for (int i = 0; i < numWolves; i++)
+            if (strategies[i] instanceof PackAware)
+                ((PackAware) strategies[i]).joinPack(pack, i);
+    }
+
+    private void indexPreys() {
+        preyIndex = new SpatialIndex(rows, cols, visibility, numPreys, 2 * (numWolves + numPreys));
+        for (int i = 0; i < numPreys; i++)
+            if (!capturedSet.get(i))
+                preyIndex.insert(i, preyRow[i], preyCol[i]);
+    }
+
+    // Saves this world between two ticks; see WolvesSnapshot
+    public WolvesSnapshot snapshot() {
+        WolvesSnapshot s = new WolvesSnapshot();
+        s.rows = rows;
+        s.cols = cols;
+        s.numWolves = numWolves;
+        s.numPreys = numPreys;
+        s.visibility = visibility;
+        s.wolfVisibility = wolfVisibility;
+        s.minCaptured = minCaptured;
+        s.min_surround = min_surround;
+        s.tickcounter = tickcounter;
+        s.gameOver = gameOver;
+        s.stalemate = stalemate;
+        s.seed = seed;
+        s.random = r.getState();
+        s.index = index.clone();
+        s.wolfRow = wolfRow.clone();
+        s.wolfCol = wolfCol.clone();
+        s.preyRow = preyRow.clone();
+        s.preyCol = preyCol.clone();
+        s.captured = Arrays.copyOf(capturedList, numCaptured);
+        s.captureTicks = Arrays.copyOf(captureTicks, numCaptured);
+        s.wolfMoves = wolfMoves.clone();
+        s.wolfBlocked = wolfBlocked.clone();
+        s.wolfAssists = wolfAssists.clone();
+        s.wolfMissed = wolfMissed.clone();
+        s.wolfNames = new String[numWolves];
+        s.wolfState = new byte[numWolves][];
+        for (int i = 0; i < numWolves; i++) {
+            s.wolfNames[i] = wolves[i].getClass().getSimpleName();
+            if (wolves[i] instanceof Snapshottable)
+                s.wolfState[i] = WolvesSnapshot.save((Snapshottable) wolves[i]);
+        }
+        s.packState = WolvesSnapshot.save(pack);
+        // A paged board is shared with the snapshot right away; any other
+        // one is built from the agents on the first fork
+        if (grid instanceof PagedGrid)
+            s.setBoard(((PagedGrid) grid).fork());
+        return s;
+    }
+
+    // Puts this world back to a snapshot of it, or of any world of the same
+    // size with the same wolf classes, seed included. Only the cells of the
+    // agents are touched, so this is cheap on any grid.
+    public void restore(WolvesSnapshot s) {
+        if (s.rows != rows || s.cols != cols || s.numWolves != numWolves || s.numPreys != numPreys)
+            throw new IllegalArgumentException("the snapshot is of a different world");
+        for (int i = 0; i < numWolves; i++) {
+            grid.set(wolfRow[i], wolfCol[i], 0);
+            addAdjacent(wolfRow[i], wolfCol[i], -1);
+        }
+        for (int i = 0; i < numPreys; i++)
+            grid.set(preyRow[i], preyCol[i], 0);
+        for (int i = 0; i < numWolves; i++) {
+            grid.set(s.wolfRow[i], s.wolfCol[i], i * 2 + 1);
+            addAdjacent(s.wolfRow[i], s.wolfCol[i], 1);
         }
+        for (int i = 0; i < numPreys; i++)
+            grid.set(s.preyRow[i], s.preyCol[i], i * 2 + 2);
+        visibility = s.visibility;
+        wolfVisibility = s.wolfVisibility;
+        minCaptured = s.minCaptured;
+        min_surround = s.min_surround;
+        // The streams seeded from the master seed follow the snapshot too
+        seed = s.seed;
+        pack.setSeed(seed, numWolves);
+        if (preyStrips != null)
+            preyStrips.setSeed(WolvesRandom.seed(seed, WolvesRandom.PREYS));
+        numCaptured = 0;
+        capturedSet.clear();
+        copyState(s);
+        indexPreys();
+        indexWolves();
+        delta.clear();
+        restoreStrategies(s);
+        hashState();
+    }
+
+    // Everything but the board, the indexes and the strategies
+    private void copyState(WolvesSnapshot s) {
+        tickcounter = s.tickcounter;
+        gameOver = s.gameOver;
+        stalemate = s.stalemate;
+        r.setState(s.random);
+        System.arraycopy(s.index, 0, index, 0, numWolves);
+        System.arraycopy(s.wolfRow, 0, wolfRow, 0, numWolves);
+        System.arraycopy(s.wolfCol, 0, wolfCol, 0, numWolves);
+        System.arraycopy(s.preyRow, 0, preyRow, 0, numPreys);
+        System.arraycopy(s.preyCol, 0, preyCol, 0, numPreys);
+        for (int i = 0; i < s.captured.length; i++) {
+            capturedList[numCaptured] = s.captured[i];
+            captureTicks[numCaptured++] = s.captureTicks[i];
+            capturedSet.set(s.captured[i]);
+        }
+        System.arraycopy(s.wolfMoves, 0, wolfMoves, 0, numWolves);
+        System.arraycopy(s.wolfBlocked, 0, wolfBlocked, 0, numWolves);
+        System.arraycopy(s.wolfAssists, 0, wolfAssists, 0, numWolves);
+        System.arraycopy(s.wolfMissed, 0, wolfMissed, 0, numWolves);
+    }
+
+    private void restoreStrategies(WolvesSnapshot s) {
+        for (int i = 0; i < numWolves; i++) {
+            if (s.wolfState[i] == null)
+                continue;
+            if (!(wolves[i] instanceof Snapshottable) || !wolves[i].getClass().getSimpleName().equals(s.wolfNames[i]))
+                throw new IllegalArgumentException("wolf " + i + " is not a " + s.wolfNames[i]);
+            WolvesSnapshot.restore((Snapshottable) wolves[i], s.wolfState[i]);
+        }
+        WolvesSnapshot.restore(pack, s.packState);
+    }
+
+    private void indexWolves() {
+        int range = wolfVisibility < 0 ? visibility : wolfVisibility;
+        wolfIndex = new SpatialIndex(rows, cols, range, numWolves, 2 * (numWolves + numPreys));
+        for (int i = 0; i < numWolves; i++)
+            wolfIndex.insert(i, wolfRow[i], wolfCol[i]);
+        pack.setWolfIndex(wolfIndex);
+        buckets = new int[Math.max(wolfIndex.maxBucketsAround(range), preyIndex.maxBucketsAround(visibility))];
+    }
+
+    // Limits how far (Manhattan distance) a wolf sees the other wolves.
+    // By default every wolf sees all other wolves, wherever they are.
+    public void setWolfVisibility(int range) {
+        wolfVisibility = range;
+        indexWolves();
     }
 
     private boolean empty(int row, int col) {
-        return (grid[row][col] == 0);
+        return (grid.get(row, col) == 0);
     }
 
-    private void initWolves() {
-        // You should put your own wolves in the array here!!
-        Wolf[] wolvesPool = new Wolf[3];
-        //wolvesPool[0] = new RandomWolf();
-        //wolvesPool[1] = new RandomWolf();
-        //wolvesPool[2] = new RandomWolf();
-        //wolvesPool[3] = new RandomWolf();
-        //wolvesPool[4] = new RandomWolf();
-        wolvesPool[0] = new BlackboardWolf();
-        wolvesPool[1] = new BlackboardWolf();
-        wolvesPool[2] = new BlackboardWolf();
+    // The next drawn cell that is empty and, for a prey, where it would not
+    // be captured right away. A cell that is neither is never drawn again.
+    private long place(CellSampler cells, boolean prey) {
+        while (cells.hasNext()) {
+            long cell = cells.next();
+            int row = (int) (cell / cols), col = (int) (cell % cols);
+            if (empty(row, col) && !(prey && captured(row, col)))
+                return cell;
+        }
+        throw new IllegalArgumentException("no room for " + numWolves + " wolves and " + numPreys + " preys on a "
+                + rows + "x" + cols + " board");
+    }
 
-        // Below code will select three random wolves from the pool.
-        // Make the pool as large as you want, but not < numWolves
-        // as the same wolf can not be selected twice.
-        Set<Integer> generated = new LinkedHashSet<Integer>();
-        while (generated.size() < numWolves) {
-            Integer next = r.nextInt(wolvesPool.length);
-            generated.add(next);
+    // Plays ticks until the wolves have won or maxTicks ticks have been played
+    // in total, and returns the outcome. Nothing is rendered unless a listener
+    // is attached, so this runs at full speed and can be called for one world
+    // after another in the same JVM.
+    public WolvesResult run(long maxTicks) {
+        while (!gameOver && tickcounter < maxTicks) {
+            tick();
         }
-        // Fill the wolves array with the selected wolves
-        int i = 0;
-        for (Integer j : generated) {
-            wolves[i++] = wolvesPool[j];
+        return getResult();
+    }
+
+    // A tick in which the wolves make the given moves instead of being asked:
+    // the row movement of wolf i in {-1,0,1} at wolfMoves[2 * i], the column
+    // movement at wolfMoves[2 * i + 1]. Nobody looks around, so this is how a
+    // world is driven from outside, e.g. by a learner through WolvesVecEnv.
+    public void tick(int[] wolfMoves) {
+        givenMoves = wolfMoves;
+        try {
+            tick();
+        } finally {
+            givenMoves = null;
         }
     }
 
     public void tick() {
-        int[][] moves = new int[numWolves][2];
+        if (gameOver)
+            return;
 
-        int cntr = 0;
-        for (int i = 0; i < numPreys; i++) {
-            if (capturedList.contains(i))
-                continue;
-            int rowMove, colMove;
-            do {
-                rowMove = r.nextInt(3) - 1;
-                colMove = r.nextInt(3) - 1;
-                cntr++;
-            } while (!empty(rowWrap(preyRow[i], rowMove), colWrap(preyCol[i], colMove))
-                    || (cntr < 100 && captured(rowWrap(preyRow[i], rowMove), colWrap(preyCol[i], colMove))));
-            grid[preyRow[i]][preyCol[i]] = 0;
-            preyRow[i] = rowWrap(preyRow[i], rowMove);
-            preyCol[i] = colWrap(preyCol[i], colMove);
-            grid[preyRow[i]][preyCol[i]] = i * 2 + 2;
+        TickMetrics m = metrics;
+        long t = m != null ? m.startTick() : 0;
 
+        delta.clear();
+        pack.setTick(tickcounter + 1);
+        numMovedPreys = 0;
+        if (preyStrips != null) {
+            numMovedPreys = preyStrips.movePreys(tickcounter, capturedSet, movedPreys);
+            for (int i = 0; i < numMovedPreys; i++) {
+                int p = movedPreys[i];
+                preyIndex.move(p, preyRow[p], preyCol[p]);
+                delta.move(p * 2 + 2, preyStrips.fromRow[p], preyStrips.fromCol[p], preyRow[p], preyCol[p]);
+            }
+        } else {
+            movePreys();
         }
+        flowFields.clear();
+        if (m != null) {
+            t = m.lap(TickMetrics.Phase.PREYS, t);
+            m.count(TickMetrics.Counter.PREY_MOVES, numMovedPreys);
+            if (preyStrips != null) {
+                m.count(TickMetrics.Counter.PREYS_STUCK, preyStrips.getStuck());
+                m.count(TickMetrics.Counter.PREY_CONFLICTS, preyStrips.getConflicts());
+            } else {
+                m.count(TickMetrics.Counter.PREYS_STUCK, preysStuck);
+            }
+        }
+
         // To change the movement style, change the limitMovement variable
         boolean limitMovement = false;
         
@@ -126,85 +488,455 @@ public class Wolves {
             index[i] = index[rIndex];
             index[rIndex] = a;
         }
+        if (m != null)
+            t = m.lap(TickMetrics.Phase.SHUFFLE, t);
 
         // Here we get the moves for the wolves
-        if (!limitMovement) {
+        if (givenMoves != null) {
+            System.arraycopy(givenMoves, 0, moves, 0, 2 * numWolves);
+        } else if (decisionPool != null) {
+            t = decideConcurrently(limitMovement, m, t);
+        } else if (!limitMovement) {
             // Wolves can move diagonally
-            for (int i = 0; i<numWolves; i++) {
-                moves[index[i]] = wolves[index[i]].moveAll(getWolfViewW(index[i]), getWolfViewP(index[i]));
+            for (int i = 0; i < numWolves; i++) {
+                fillView(index[i], view);
+                if (m != null)
+                    t = m.lap(TickMetrics.Phase.PERCEPTION, t);
+                strategies[index[i]].moveAll(view, moves, 2 * index[i]);
+                if (m != null)
+                    t = m.decision(decisionTimes[index[i]], t);
             }
         } else {
             // Wolves can not move diagonally
             for (int i = 0; i < numWolves; i++) {
-                int dir = wolves[index[i]].moveLim(getWolfViewW(index[i]), getWolfViewP(index[i]));
-                switch (dir) {
-                    case 0:
-                        moves[index[i]][0] = 0;
-                        moves[index[i]][1] = 0;
-                        break;
-                    case 1:
-                        // left 
-                        moves[index[i]][0] = -1;
-                        moves[index[i]][1] = 0;
-                        break;
-                    case 2:
-                        // down
-                        moves[index[i]][0] = 0;
-                        moves[index[i]][1] = 1;
-                        break;
-                    case 3:
-                        // right
-                        moves[index[i]][0] = 1;
-                        moves[index[i]][1] = 0;
-                        break;
-                    case 4:
-                        // up
-                        moves[index[i]][0] = 0;
-                        moves[index[i]][1] = -1;
-                        break;
-                }
+                fillView(index[i], view);
+                if (m != null)
+                    t = m.lap(TickMetrics.Phase.PERCEPTION, t);
+                setLimMove(index[i], strategies[index[i]].moveLim(view));
+                if (m != null)
+                    t = m.decision(decisionTimes[index[i]], t);
             }
         }
 
         // and here we move everybody
+        int wanted = 0, blocked = 0;
         for (int i = 0; i < numWolves; i++) {
-            if (empty(rowWrap(wolfRow[i], moves[i][0]), colWrap(wolfCol[i], moves[i][1]))) {
-                grid[wolfRow[i]][wolfCol[i]] = 0;
-                wolfRow[i] = rowWrap(wolfRow[i], moves[i][0]);
-                wolfCol[i] = colWrap(wolfCol[i], moves[i][1]);
-                grid[wolfRow[i]][wolfCol[i]] = i * 2 + 1;
+            if (moves[2 * i] == 0 && moves[2 * i + 1] == 0)
+                continue;
+            wanted++;
+            wolfMoves[i]++;
+            if (empty(rowWrap(wolfRow[i], moves[2 * i]), colWrap(wolfCol[i], moves[2 * i + 1]))) {
+                int fromR = wolfRow[i], fromC = wolfCol[i];
+                addAdjacent(wolfRow[i], wolfCol[i], -1);
+                wolfRow[i] = rowWrap(wolfRow[i], moves[2 * i]);
+                wolfCol[i] = colWrap(wolfCol[i], moves[2 * i + 1]);
+                grid.move(fromR, fromC, wolfRow[i], wolfCol[i]);
+                addAdjacent(wolfRow[i], wolfCol[i], 1);
+                wolfIndex.move(i, wolfRow[i], wolfCol[i]);
+                delta.move(i * 2 + 1, fromR, fromC, wolfRow[i], wolfCol[i]);
+            } else {
+                wolfBlocked[i]++;
+                blocked++;
             }
         }
 
-        visuals.update();
         tickcounter++;
+        if (m != null) {
+            t = m.lap(TickMetrics.Phase.MOVES, t);
+            m.count(TickMetrics.Counter.WOLF_MOVES, wanted);
+            m.count(TickMetrics.Counter.BLOCKED_MOVES, blocked);
+        }
 
-        for (int i = 0; i < numPreys; i++) { //add new captured to list
-            if (capturedList.contains(i))
+        // A prey can only have become captured if it moved itself, or if a wolf
+        // moved next to it. Wolves moving away only lower the counts.
+        int numCandidates = 0;
+        for (int i = 0; i < numMovedPreys; i++)
+            candidates[numCandidates++] = movedPreys[i];
+        for (int i = 0; i < numWolves; i++) {
+            if (moves[2 * i] == 0 && moves[2 * i + 1] == 0)
                 continue;
-            if (captured(preyRow[i], preyCol[i]))
-                capturedList.add(i);
+            for (int dr = -1; dr <= 1; dr++) {
+                for (int dc = -1; dc <= 1; dc++) {
+                    int cell = grid.get(rowWrap(wolfRow[i], dr), colWrap(wolfCol[i], dc));
+                    if (cell != 0 && cell % 2 == 0)
+                        candidates[numCandidates++] = cell / 2 - 1;
+                }
+            }
         }
+        if (preyStrips != null)
+            numCandidates = preyStrips.checkCaptures(candidates, numCandidates, candidates);
+        int before = numCaptured;
+        for (int i = 0; i < numCandidates; i++)
+            checkCaptured(candidates[i]);
 
         //check whether enough preys have been captured
-        if (capturedList.size() >= minCaptured) {
-            JOptionPane.showMessageDialog(null, "Wolves won in " + tickcounter + " steps!!");
-            System.out.println("Winners");
-            System.exit(0);
+        if (numCaptured >= minCaptured)
+            gameOver = true;
+        else if (numCaptured > before)
+            lastProgress = tickcounter;
+        updateHash();
+        if (!gameOver && (noCaptureWindow > 0 || history != null))
+            checkStalemate();
+
+        if (m != null) {
+            t = m.lap(TickMetrics.Phase.CAPTURES, t);
+            m.count(TickMetrics.Counter.CAPTURES, numCaptured - before);
+        }
+
+        for (WolvesListener l : listeners)
+            l.tickCompleted(this);
+        if (m != null) {
+            m.lap(TickMetrics.Phase.LISTENERS, t);
+            m.endTick(tickcounter);
         }
+        if (gameOver && !listeners.isEmpty()) {
+            WolvesResult result = getResult();
+            for (WolvesListener l : listeners)
+                l.gameOver(this, result);
+        }
+    }
+
+    // Ends the game in a stalemate when the wolves make no progress: when
+    // no prey was captured for noCaptureTicks ticks, or when maxRepeats ticks
+    // in a row bring back a state of the last history ticks, e.g. agents
+    // going back and forth. 0 switches either check off, the default.
+    // Both start counting now.
+    public void setStalemate(long noCaptureTicks, int history, int maxRepeats) {
+        this.noCaptureWindow = noCaptureTicks;
+        if (history <= 0 || maxRepeats <= 0)
+            this.history = null;
+        else if (this.history == null || this.history.length != history)
+            this.history = new long[history];   // kept when the size stays, e.g. between resets
+        this.maxRepeats = maxRepeats;
+        historySize = 0;
+        historyNext = 0;
+        repeats = 0;
+        lastProgress = tickcounter;
     }
 
+    // A fingerprint of the positions of all agents and of the captures,
+    // kept up to date in O(1) per move. Equal positions give equal hashes,
+    // in any world of the same size, so it can also key caches of states.
+    public long getStateHash() {
+        return stateHash;
+    }
+
+    private long zobrist(int agent, int row, int col, boolean captured) {
+        return WolvesRandom.seed(ZOBRIST, ((((long) agent * rows + row) * cols + col) << 1) | (captured ? 1 : 0));
+    }
+
+    // From scratch, when the world starts or is restored
+    private void hashState() {
+        stateHash = 0;
+        for (int i = 0; i < numWolves; i++)
+            stateHash ^= zobrist(2 * i + 1, wolfRow[i], wolfCol[i], false);
+        for (int i = 0; i < numPreys; i++)
+            stateHash ^= zobrist(2 * i + 2, preyRow[i], preyCol[i], capturedSet.get(i));
+        historySize = 0;
+        historyNext = 0;
+        repeats = 0;
+        lastProgress = tickcounter;
+    }
+
+    // From the moves and captures of this tick
+    private void updateHash() {
+        for (int k = 0; k < delta.numMoves; k++) {
+            int a = delta.agent[k];
+            stateHash ^= zobrist(a, delta.fromRow[k], delta.fromCol[k], false)
+                       ^ zobrist(a, delta.toRow[k], delta.toCol[k], false);
+        }
+        for (int k = 0; k < delta.numCaptures; k++) {
+            int p = delta.captured[k];
+            stateHash ^= zobrist(2 * p + 2, preyRow[p], preyCol[p], false)
+                       ^ zobrist(2 * p + 2, preyRow[p], preyCol[p], true);
+        }
+    }
+
+    private void checkStalemate() {
+        if (noCaptureWindow > 0 && tickcounter - lastProgress >= noCaptureWindow)
+            stalemate = true;
+        if (history != null) {
+            boolean seen = false;
+            for (int i = 0; i < historySize && !seen; i++)
+                seen = history[i] == stateHash;
+            repeats = seen ? repeats + 1 : 0;
+            history[historyNext] = stateHash;
+            historyNext = (historyNext + 1) % history.length;
+            historySize = Math.max(historySize, historyNext == 0 ? history.length : historyNext);
+            if (repeats >= maxRepeats)
+                stalemate = true;
+        }
+        if (stalemate)
+            gameOver = true;
+    }
+
+    // Every prey looks at its 8 neighbours once and its policy picks one of
+    // the free ones, so a move costs the same however crowded the board is,
+    // and a prey that is boxed in just stays put this tick.
+    private void movePreys() {
+        preysStuck = 0;
+        for (int i = 0; i < numPreys; i++) {
+            if (capturedSet.get(i))
+                continue;
+            int free = grid.freeNeighbours(preyRow[i], preyCol[i]);
+            int d = free != 0 ? preyPolicy.move(this, i, free, r.nextLong()) : -1;
+            if (d < 0 || (free & (1 << d)) == 0) {
+                preysStuck++;
+                continue;
+            }
+            int fromR = preyRow[i], fromC = preyCol[i];
+            preyRow[i] = rowWrap(preyRow[i], PreyStrips.DR[d]);
+            preyCol[i] = colWrap(preyCol[i], PreyStrips.DC[d]);
+            grid.move(fromR, fromC, preyRow[i], preyCol[i]);
+            preyIndex.move(i, preyRow[i], preyCol[i]);
+            movedPreys[numMovedPreys++] = i;
+            delta.move(i * 2 + 2, fromR, fromC, preyRow[i], preyCol[i]);
+        }
+    }
+
+    // Those of the given neighbours of a cell, as a PreyPolicy mask, where a
+    // prey would not be captured
+    public int safeNeighbours(int row, int col, int free) {
+        int safe = free;
+        for (int m = free; m != 0; m &= m - 1) {
+            int d = Integer.numberOfTrailingZeros(m);
+            if (captured(rowWrap(row, PreyStrips.DR[d]), colWrap(col, PreyStrips.DC[d])))
+                safe &= ~(1 << d);
+        }
+        return safe;
+    }
+
+    // How the preys move, RandomPrey by default; see PreyPolicy. It applies
+    // from the next tick on, in the serial and in the parallel prey mode.
+    public void setPreyPolicy(PreyPolicy policy) {
+        preyPolicy = policy;
+    }
+
+    public PreyPolicy getPreyPolicy() {
+        return preyPolicy;
+    }
+
+    // Turns a moveLim answer into the row and col move of the wolf
+    private void setLimMove(int wolf, int dir) {
+        int rowMove = 0, colMove = 0;
+        switch (dir) {
+            case 1:
+                // left 
+                rowMove = -1;
+                break;
+            case 2:
+                // down
+                colMove = 1;
+                break;
+            case 3:
+                // right
+                rowMove = 1;
+                break;
+            case 4:
+                // up
+                colMove = -1;
+                break;
+        }
+        moves[2 * wolf] = rowMove;
+        moves[2 * wolf + 1] = colMove;
+    }
+
+    // Lets the wolves decide at the same time on the given pool, each with a view
+    // of its own taken from the same pre-move state, and waits at most
+    // decisionBudget nanoseconds from the start of the phase. A wolf that is not
+    // done by then, or is still busy with an earlier decision, stands still this
+    // tick and gets a missed decision. The moves are applied in the shuffled
+    // order afterwards, exactly as in the serial mode. With metrics, returns
+    // the time the phase ended at.
+    private long decideConcurrently(boolean limitMovement, TickMetrics m, long t) {
+        long deadline = System.nanoTime() + decisionBudget;   // perception counts against it
+        final int queued = (int) (tickcounter & 0x3FFFFFFF) + 1;
+        for (int i = 0; i < numWolves; i++) {
+            int w = index[i];
+            moves[2 * w] = 0;
+            moves[2 * w + 1] = 0;
+            pending[w] = null;
+            if (busy.get(w) != 0) {
+                wolfMissed[w]++;
+                if (m != null)
+                    m.count(TickMetrics.Counter.MISSED_DECISIONS, 1);
+                continue;
+            }
+            fillView(w, views[w]);
+            if (m != null)
+                t = m.lap(TickMetrics.Phase.PERCEPTION, t);
+            busy.set(w, queued);
+            final WolfView v = views[w];
+            final int[] out = decisions[w];
+            pending[w] = decisionPool.submit(() -> {
+                if (!busy.compareAndSet(w, queued, -1))
+                    return;   // given up on before it started
+                try {
+                    long begin = m != null ? System.nanoTime() : 0;
+                    if (limitMovement)
+                        out[0] = strategies[w].moveLim(v);
+                    else
+                        strategies[w].moveAll(v, out, 0);
+                    if (m != null)
+                        decisionNanos[w] = System.nanoTime() - begin;
+                } finally {
+                    busy.set(w, 0);
+                }
+            });
+        }
+        for (int i = 0; i < numWolves; i++) {
+            int w = index[i];
+            if (pending[w] == null)
+                continue;
+            try {
+                pending[w].get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // Too late: a decision still queued never starts and frees the
+                // wolf now; one under way may still be writing, so the wolf
+                // gets fresh buffers and stays busy until it is done
+                pending[w].cancel(true);
+                busy.compareAndSet(w, queued, 0);
+                wolfMissed[w]++;
+                if (m != null)
+                    m.count(TickMetrics.Counter.MISSED_DECISIONS, 1);
+                views[w] = new WolfView(views[w].wolfRows.length, views[w].preyRows.length);
+                decisions[w] = new int[2];
+                continue;
+            } catch (ExecutionException e) {
+                throw new RuntimeException("wolf " + w + " failed to decide", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            if (m != null)
+                m.decided(decisionTimes[w], decisionNanos[w]);
+            if (limitMovement) {
+                setLimMove(w, decisions[w][0]);
+            } else {
+                moves[2 * w] = decisions[w][0];
+                moves[2 * w + 1] = decisions[w][1];
+            }
+        }
+        return m != null ? m.lap(TickMetrics.Phase.DECISIONS, t) : t;
+    }
+
+    // Lets the wolves decide concurrently on the given pool. A decision that takes
+    // longer than budget counts as missed and the wolf stands still; the budget
+    // runs from the start of the decision phase, so give the pool a thread per
+    // wolf for it to apply to every decision. Strategies must then tolerate being
+    // called from several threads, in particular when they share Pack state.
+    // Wolves that draw from Pack.getRandom play the same game for a seed on any
+    // number of threads, unless decisions are missed or the wolves talk to each
+    // other through the Pack, whose order of updates is then up to the threads.
+    public void setParallelDecisions(ExecutorService pool, long budget, TimeUnit unit) {
+        decisionPool = pool;
+        decisionBudget = unit.toNanos(budget);
+        views = new WolfView[numWolves];
+        decisions = new int[numWolves][2];
+        for (int i = 0; i < numWolves; i++)
+            views[i] = new WolfView(Math.max(0, numWolves - 1), numPreys);
+        pending = new Future<?>[numWolves];
+        busy = new AtomicIntegerArray(numWolves);
+        decisionNanos = new long[numWolves];
+    }
+
+    // Back to asking the wolves one after the other, on the ticking thread
+    public void setSerialDecisions() {
+        decisionPool = null;
+    }
+
+    // Moves the preys, and checks them for captures, in the given number of
+    // strips of rows on the given pool. The outcome for a given seed does not
+    // depend on the number of threads or strips; see PreyStrips. The preys
+    // draw from a stream of their own, so switching modes leaves the engine
+    // stream alone. Only available on a DenseGrid.
+    public void setParallelPreys(ForkJoinPool pool, int strips) {
+        if (!(grid instanceof DenseGrid))
+            throw new IllegalStateException("parallel preys need a DenseGrid");
+        preyStrips = new PreyStrips(this, (DenseGrid) grid, preyRow, preyCol, pool, strips,
+                WolvesRandom.seed(seed, WolvesRandom.PREYS));
+    }
+
+    public void setSerialPreys() {
+        preyStrips = null;
+    }
+
+    // Times the phases of every tick into the given metrics from now on;
+    // null, the default, stops measuring. See TickMetrics.
+    public void setMetrics(TickMetrics metrics) {
+        this.metrics = metrics;
+        if (metrics != null) {
+            decisionTimes = new TickMetrics.Histogram[numWolves];
+            for (int i = 0; i < numWolves; i++)
+                decisionTimes[i] = metrics.decisionsOf(wolves[i].getClass().getSimpleName());
+        }
+    }
+
+    public TickMetrics getMetrics() {
+        return metrics;
+    }
+
+    // add new captured to list
+    private void checkCaptured(int prey) {
+        if (capturedSet.get(prey) || !captured(preyRow[prey], preyCol[prey]))
+            return;
+        capturedSet.set(prey);
+        delta.capture(prey);
+        capturedList[numCaptured] = prey;
+        captureTicks[numCaptured++] = tickcounter;
+        preyIndex.remove(prey);
+        countAssists(preyRow[prey], preyCol[prey]);
+    }
+
+    // Credit every wolf standing next to a freshly captured prey
+    private void countAssists(int r, int c) {
+        for (int dr = -1; dr <= 1; dr++) {
+            for (int dc = -1; dc <= 1; dc++) {
+                int cell = grid.get(rowWrap(r, dr), colWrap(c, dc));
+                if (cell % 2 == 1)
+                    wolfAssists[(cell - 1) / 2]++;
+            }
+        }
+    }
+
+    public WolvesResult getResult() {
+        int[] preys = Arrays.copyOf(capturedList, numCaptured);
+        long[] ticks = Arrays.copyOf(captureTicks, numCaptured);
+        String[] names = new String[numWolves];
+        for (int i = 0; i < numWolves; i++) {
+            names[i] = wolves[i].getClass().getSimpleName();
+        }
+        return new WolvesResult(gameOver && !stalemate, stalemate, tickcounter, preys, ticks, names,
+                wolfMoves.clone(), wolfBlocked.clone(), wolfAssists.clone(), wolfMissed.clone());
+    }
+
+    // The moves and captures of the last tick, e.g. for redrawing only the cells
+    // that changed. Refilled by every tick; read it from tickCompleted.
+    public TickDelta getDelta() {
+        return delta;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    // Whether the game was called off, see setStalemate
+    public boolean isStalemate() {
+        return stalemate;
+    }
+
+    public long getTickCount() {
+        return tickcounter;
+    }
+
+    // O(1): the number of wolves around each cell is kept up to date as wolves move
     public boolean captured(int r, int c) {
-        int count = 0;
-        if (grid[rowWrap(r, -1)][colWrap(c, -1)] % 2 == 1) count++;
-        if (grid[rowWrap(r, -1)][colWrap(c, 0)] % 2 == 1) count++;
-        if (grid[rowWrap(r, -1)][colWrap(c, 1)] % 2 == 1) count++;
-        if (grid[rowWrap(r, 0)][colWrap(c, -1)] % 2 == 1) count++;
-        if (grid[rowWrap(r, 0)][colWrap(c, 1)] % 2 == 1) count++;
-        if (grid[rowWrap(r, 1)][colWrap(c, -1)] % 2 == 1) count++;
-        if (grid[rowWrap(r, 1)][colWrap(c, 0)] % 2 == 1) count++;
-        if (grid[rowWrap(r, 1)][colWrap(c, 1)] % 2 == 1) count++;
-        return (count >= min_surround);
+        return (grid.adjacent(r, c) >= min_surround);
+    }
+
+    // Adds delta to the wolf count of the 8 cells around (r, c)
+    private void addAdjacent(int r, int c, int delta) {
+        grid.addAdjacentAround(r, c, delta);
     }
 
     public int rowWrap(int x, int inc) {
@@ -229,16 +961,49 @@ public class Wolves {
         return rows;
     }
 
+    public int getNumbWolves() {
+        return numWolves;
+    }
+
+    public int getNumbPreys() {
+        return numPreys;
+    }
+
+    // Absolute positions of the agents, e.g. for recording a game
+    public int getWolfRow(int wolf) {
+        return wolfRow[wolf];
+    }
+
+    public int getWolfCol(int wolf) {
+        return wolfCol[wolf];
+    }
+
+    public int getPreyRow(int prey) {
+        return preyRow[prey];
+    }
+
+    public int getPreyCol(int prey) {
+        return preyCol[prey];
+    }
+
     public boolean isWolf(int i, int j) { //Odd numbers are wolves
-        return grid[i][j] % 2 == 1;
+        return grid.isWolf(i, j);
     }
 
     public boolean isPrey(int i, int j) { //Even numbers are sheeps
-        return grid[i][j] != 0 & grid[i][j] % 2 == 0;
+        return grid.isPrey(i, j);
     }
 
     public void attach(WolvesUI wolvesUI) {
-        visuals = wolvesUI;
+        addListener(wolvesUI);
+    }
+
+    public void addListener(WolvesListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(WolvesListener listener) {
+        listeners.remove(listener);
     }
 
     public int manhattanDistance(int x0, int y0, int x1, int y1) {
@@ -259,33 +1024,82 @@ public class Wolves {
         else return dist;
     }
 
-    public List<int[]> getWolfViewW(int wolf) {
-        List<int[]> wolves = new ArrayList<>();
-        for (int i = 0; i < numWolves; i++) {
-        	if (manhattanDistance(wolfRow[wolf], wolfCol[wolf], wolfRow[i], wolfCol[i]) == 0) {
-                continue;
+    // Writes what the given wolf sees into view, without allocating
+    public void fillView(int wolf, WolfView view) {
+        fillWolves(wolf, view);
+        fillPreys(wolf, view);
+    }
+
+    // The other wolves, relative to this one and in random order. By default a
+    // wolf sees all of them; see setWolfVisibility.
+    private void fillWolves(int wolf, WolfView view) {
+        int myRow = wolfRow[wolf], myCol = wolfCol[wolf];
+        int count = 0;
+        if (wolfVisibility < 0) {
+            for (int i = 0; i < numWolves; i++) {
+                if (i == wolf)
+                    continue;
+                view.wolfRows[count] = rowDistance(myRow, wolfRow[i]);
+                view.wolfCols[count++] = colDistance(myCol, wolfCol[i]);
+            }
+        } else {
+            int n = wolfIndex.bucketsAround(myRow, myCol, wolfVisibility, buckets);
+            for (int b = 0; b < n; b++) {
+                for (int i = wolfIndex.head(buckets[b]); i >= 0; i = wolfIndex.next(i)) {
+                    if (i == wolf || manhattanDistance(myRow, myCol, wolfRow[i], wolfCol[i]) > wolfVisibility)
+                        continue;
+                    view.wolfRows[count] = rowDistance(myRow, wolfRow[i]);
+                    view.wolfCols[count++] = colDistance(myCol, wolfCol[i]);
+                }
             }
-            int relX = rowDistance(wolfRow[wolf],wolfRow[i]);
-            int relY = colDistance(wolfCol[wolf],wolfCol[i]);
-            int[] agent = new int[]{relX, relY};
-            wolves.add(agent);
         }
-        Collections.shuffle(wolves);
+        view.numWolves = count;
+        shuffle(view.wolfRows, view.wolfCols, count);
+    }
+
+    // The uncaptured preys within visibility, relative to this wolf and in random
+    // order. Only uncaptured preys are in the index, and only the buckets around
+    // the wolf can hold preys within its visibility.
+    private void fillPreys(int wolf, WolfView view) {
+        int myRow = wolfRow[wolf], myCol = wolfCol[wolf];
+        int count = 0;
+        int n = preyIndex.bucketsAround(myRow, myCol, visibility, buckets);
+        for (int b = 0; b < n; b++) {
+            for (int i = preyIndex.head(buckets[b]); i >= 0; i = preyIndex.next(i)) {
+                if (manhattanDistance(myRow, myCol, preyRow[i], preyCol[i]) > visibility)
+                    continue;
+                view.preyRows[count] = rowDistance(myRow, preyRow[i]);
+                view.preyCols[count++] = colDistance(myCol, preyCol[i]);
+            }
+        }
+        view.numPreys = count;
+        shuffle(view.preyRows, view.preyCols, count);
+    }
+
+    // Same swaps, and the same random numbers, as Collections.shuffle(list, r)
+    private void shuffle(int[] rows, int[] cols, int count) {
+        for (int i = count; i > 1; i--) {
+            int j = r.nextInt(i);
+            int tmp = rows[i - 1]; rows[i - 1] = rows[j]; rows[j] = tmp;
+            tmp = cols[i - 1]; cols[i - 1] = cols[j]; cols[j] = tmp;
+        }
+    }
+
+    public List<int[]> getWolfViewW(int wolf) {
+        WolfView v = new WolfView(Math.max(0, numWolves - 1), 0);
+        fillWolves(wolf, v);
+        List<int[]> wolves = new ArrayList<>(v.numWolves);
+        for (int i = 0; i < v.numWolves; i++)
+            wolves.add(new int[]{v.wolfRows[i], v.wolfCols[i]});
         return wolves;
     }
 
     public List<int[]> getWolfViewP(int wolf) {
-        List<int[]> preys = new ArrayList<>();
-        for (int i = 0; i < numPreys; i++) {
-            if (capturedList.contains(i) ||
-                    (manhattanDistance(wolfRow[wolf], wolfCol[wolf], preyRow[i], preyCol[i]) > visibility))
-                continue;
-            int relX = rowDistance(wolfRow[wolf],preyRow[i]);
-            int relY = colDistance(wolfCol[wolf],preyCol[i]);
-            int[] agent = new int[]{relX, relY};
-            preys.add(agent);
-        }
-        Collections.shuffle(preys);
+        WolfView v = new WolfView(0, numPreys);
+        fillPreys(wolf, v);
+        List<int[]> preys = new ArrayList<>(v.numPreys);
+        for (int i = 0; i < v.numPreys; i++)
+            preys.add(new int[]{v.preyRows[i], v.preyCols[i]});
         return preys;
     }
 
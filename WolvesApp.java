@@ -5,33 +5,71 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 
 import javax.swing.JFrame;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
 import javax.swing.JToggleButton;
+import javax.swing.Timer;
 
 @SuppressWarnings("serial")
 public class WolvesApp extends JFrame {
 		
-	private Wolves game;
+	private Wolves game;          // null when showing a replay
+	private WolvesBoard board;
+	private WolvesUI panel;
 	private JPanel control;
-	private boolean paused = true;
+	private JLabel status;
+	private WolvesScheduler scheduler;
+	private TickMetrics metrics;
+	private String metricsFile;
+	private EpisodeRecorder recorder;
 
 	public WolvesApp(String title, int numbrows, int numbcols, int squaresize) {
 		
 		// init window
 		super(title);
+
+		//Wolves(numbrows, numbcols, numbWolves, numbPrey, visibilityRangePrey, minCapturedToEndGame(leave at 1), numberOfWolvesNeededToCaptureAPrey)
+		game = new Wolves(numbrows, numbcols,3,10,5,1, 2);
+		board = game;
+		
+		panel = new WolvesUI(game,squaresize);
+		game.addListener(new WolvesListener() {
+			public void gameOver(Wolves game, WolvesResult result) {
+				dumpMetrics();
+				closeRecording();
+				if (result.isStalemate()) {
+					JOptionPane.showMessageDialog(null, "Stalemate after " + result.getTicks() + " steps");
+					System.out.println("Stalemate");
+				} else {
+					JOptionPane.showMessageDialog(null, "Wolves won in " + result.getTicks() + " steps!!");
+					System.out.println("Winners");
+				}
+				System.exit(0);
+			}
+		});
+		buildWindow(squaresize);
+	}
+
+	// Shows a recorded game instead of playing a new one
+	public WolvesApp(String title, EpisodeReplay replay, int squaresize) {
+		super(title);
+		board = replay;
+		panel = new WolvesUI(replay, squaresize);
+		replay.addListener(r -> panel.boardChanged(r.getDelta()));
+		buildWindow(squaresize);
+	}
+
+	private void buildWindow(int squaresize) {
 		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
 		setResizable(false);
 		
 		// set window location to center of screen
 		Dimension screenSize = Toolkit.getDefaultToolkit().getScreenSize();
-		int left = (screenSize.width - numbcols*squaresize)/ 2;
-		int top  = (screenSize.height - numbrows*squaresize)/ 2;
+		int left = (screenSize.width - board.getNumbCols()*squaresize)/ 2;
+		int top  = (screenSize.height - board.getNumbRows()*squaresize)/ 2;
 		setLocation(left, top);
 
-		//Wolves(numbrows, numbcols, numbWolves, numbPrey, visibilityRangePrey, minCapturedToEndGame(leave at 1), numberOfWolvesNeededToCaptureAPrey)
-		game = new Wolves(numbrows, numbcols,3,10,5,1, 2);
-		
-		WolvesUI panel = new WolvesUI(game,squaresize);
 		add(panel, BorderLayout.CENTER);
 		
 		control = new JPanel();
@@ -51,24 +89,69 @@ public class WolvesApp extends JFrame {
 			public void mouseClicked(MouseEvent e) {}
 			});
 		control.add(pauseButton);
+		status = new JLabel();
+		control.add(status);
 		add(control, BorderLayout.NORTH);
 		
 		pack();
 		this.setVisible(true);
 	}
 
+	// Measures the phases of every tick and every paint, and writes them to
+	// the given file (CSV if it ends in .csv, JSON otherwise) when the game ends
+	public void recordMetrics(String file) {
+		metrics = new TickMetrics();
+		metricsFile = file;
+		game.setMetrics(metrics);
+		panel.setMetrics(metrics);
+	}
+
+	private void dumpMetrics() {
+		if (metrics == null)
+			return;
+		try {
+			metrics.dump(metricsFile);
+		} catch (java.io.IOException e) {
+			System.err.println("could not write " + metricsFile + ": " + e.getMessage());
+		}
+	}
+
+	// Records the game to the given file, for EpisodeReplay
+	public void recordEpisode(String file) throws java.io.IOException {
+		recorder = new EpisodeRecorder(game, file);
+		game.addListener(recorder);
+	}
+
+	private void closeRecording() {
+		if (recorder == null)
+			return;
+		try {
+			recorder.close();
+		} catch (java.io.IOException e) {
+			System.err.println("could not write the recording: " + e.getMessage());
+		}
+	}
+
 	protected void togglePaused() {
-		paused = !paused;
+		scheduler.setPaused(!scheduler.isPaused());
+	}
+
+	// Runs the game at tps ticks per second (unbounded if tps <= 0) on a thread
+	// of its own and repaints at fps frames per second (after every tick if
+	// fps <= 0), showing how far the engine lags behind its schedule.
+	public void runGoL(double tps, int fps, WolvesScheduler.Policy policy) {
+		scheduler = new WolvesScheduler(board, tps);
+		scheduler.setPolicy(policy);
+		scheduler.setPaused(true);
+		panel.setFrameRate(fps);
+		new Timer(250, e -> status.setText(String.format("tick %d  %.0f ticks/s  lag %.1f ms (max %.1f)  skipped %d",
+				board.getTickCount(), scheduler.getTicksPerSecond(), scheduler.getTickLagNanos() / 1e6,
+				scheduler.getMaxTickLagNanos() / 1e6, scheduler.getSkippedTicks()))).start();
+		scheduler.start();
 	}
 
 	public void runGoL(int delay) {
-		while (true) {
-			try {
-				Thread.sleep(delay);
-			}
-			catch (Exception e) {}
-			if (!paused) game.tick();
-		}
+		runGoL(1000.0 / Math.max(1, delay), 0, WolvesScheduler.Policy.CATCH_UP);
 	}
 
 
@@ -77,7 +160,12 @@ public class WolvesApp extends JFrame {
 		int width = 50;
 		int height = 50;
 		int squaresize = 15;
-		int delay = 100;
+		double tps = 10;
+		int fps = 60;
+		WolvesScheduler.Policy policy = WolvesScheduler.Policy.CATCH_UP;
+		String metricsFile = null;
+		String recordFile = null;
+		String replayFile = null;
 		
 		//Parameters
 		try {
@@ -89,14 +177,26 @@ public class WolvesApp extends JFrame {
 				else if (args[tmp].compareTo("-squaresize") == 0)
 					squaresize = Integer.parseInt(args[++tmp]);
 				else if (args[tmp].compareTo("-delay") == 0)
-					delay = Integer.parseInt(args[++tmp]);
+					tps = 1000.0 / Integer.parseInt(args[++tmp]);
+				else if (args[tmp].compareTo("-tps") == 0)
+					tps = Double.parseDouble(args[++tmp]);
+				else if (args[tmp].compareTo("-fps") == 0)
+					fps = Integer.parseInt(args[++tmp]);
+				else if (args[tmp].compareTo("-policy") == 0)
+					policy = WolvesScheduler.Policy.valueOf(args[++tmp].toUpperCase());
+				else if (args[tmp].compareTo("-metrics") == 0)
+					metricsFile = args[++tmp];
+				else if (args[tmp].compareTo("-record") == 0)
+					recordFile = args[++tmp];
+				else if (args[tmp].compareTo("-replay") == 0)
+					replayFile = args[++tmp];
 				else
 					throw new Exception();
 			}
 			if ((39 >= width) || (width >= 501)) throw new Exception();
 			if ((39 >= height) || (height >= 501)) throw new Exception();
 			if ((1 >= squaresize) || (Math.max(width,height)*squaresize >= 1001)) throw new Exception();
-			if (49 >= delay) throw new Exception();
+			if (tps < 0 || Double.isNaN(tps) || fps < 0) throw new Exception();
 		}	
 		catch(Exception e) {
 			//e.printStackTrace();
@@ -108,13 +208,34 @@ public class WolvesApp extends JFrame {
 			System.err.println("     width (39 < value < 501)");
 			System.err.println("     height (39 < value < 501)");
 			System.err.println("     squaresize (1 < value && max(height,width)*squaresize < 1001)");
-			System.err.println("     delay (49 < value)");
+			System.err.println("     delay (0 < value, milliseconds per tick, same as -tps 1000/delay)");
+			System.err.println("     tps (ticks per second, 0 for as fast as possible)");
+			System.err.println("     fps (frames per second, 0 to repaint after every tick)");
+			System.err.println("     policy (catch_up or skip, what to do with ticks the engine fell behind on)");
+			System.err.println("     metrics (file to write tick timings to at the end, .csv or .json)");
+			System.err.println("     record (file to record the game to)");
+			System.err.println("     replay (recorded game to show instead of playing one; its own size is used)");
 			System.err.println("");
 			System.exit(-1);
 		}
 		
-		WolvesApp wol = new WolvesApp("Hungry Hungry Wolves", height, width, squaresize);
-		wol.runGoL(delay);
+		WolvesApp wol;
+		try {
+			if (replayFile != null) {
+				wol = new WolvesApp("Hungry Hungry Wolves - " + replayFile, new EpisodeReplay(replayFile), squaresize);
+			} else {
+				wol = new WolvesApp("Hungry Hungry Wolves", height, width, squaresize);
+				if (metricsFile != null)
+					wol.recordMetrics(metricsFile);
+				if (recordFile != null)
+					wol.recordEpisode(recordFile);
+			}
+		} catch (java.io.IOException e) {
+			System.err.println(e.getMessage());
+			System.exit(-1);
+			return;
+		}
+		wol.runGoL(tps, fps, policy);
 	}
 
 
@@ -0,0 +1,329 @@
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Supplier;
+
+// Micro-benchmarks for the hot paths of the simulation. Every benchmark is
+// warmed up, then run for a fixed time, and reports the time per operation
+// together with the bytes allocated per operation and the allocation rate,
+// measured on the benchmarking thread:
+//
+//     javac WolvesBench.java
+//     java WolvesBench [-filter text] [-warmup ms] [-time ms]
+//
+// Run it with the same JVM flags as the real workload; numbers from a
+// laptop on battery or a busy machine are not worth comparing.
+public class WolvesBench {
+
+    // One benchmark: setup() builds the state, op() is the measured operation.
+    // The value returned by op() is summed into a sink so that the JIT cannot
+    // optimise the work away.
+    abstract static class Bench {
+        final String name;
+
+        Bench(String name) {
+            this.name = name;
+        }
+
+        void setup() {
+        }
+
+        abstract long op();
+    }
+
+    private static long sink;
+
+    public static void main(String[] args) {
+        String filter = "";
+        long warmupMs = 1000;
+        long timeMs = 2000;
+
+        //Parameters
+        try {
+            for (int tmp = 0; tmp < args.length; tmp++) {
+                if (args[tmp].compareTo("-filter") == 0)
+                    filter = args[++tmp];
+                else if (args[tmp].compareTo("-warmup") == 0)
+                    warmupMs = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-time") == 0)
+                    timeMs = Long.parseLong(args[++tmp]);
+                else
+                    throw new Exception();
+            }
+        }
+        catch (Exception e) {
+            System.err.println("USAGE: java WolvesBench [-filter text] [-warmup ms] [-time ms]");
+            System.exit(-1);
+        }
+        System.setProperty("java.awt.headless", "true");
+
+        System.out.printf("%-44s %14s %12s %12s%n", "benchmark", "ns/op", "B/op", "MB/s alloc");
+        for (Bench b : benchmarks()) {
+            if (b.name.contains(filter))
+                measure(b, warmupMs, timeMs);
+        }
+        if (sink == 42)
+            System.out.println();
+    }
+
+    static List<Bench> benchmarks() {
+        List<Bench> list = new ArrayList<>();
+        // tick() across board sizes, with the default agent counts and crowded boards
+        int[] sizes = { 40, 100, 250, 500, 1000 };
+        for (int size : sizes) {
+            list.add(tick(size, 3, 10));
+            list.add(tick(size, size / 4, size * size / 50));
+        }
+        // the grids on large crowded boards: a whole tick, and the neighbourhood reads alone
+        for (int size : new int[] { 500, 1000 }) {
+            for (String grid : WolvesTournament.GRIDS) {
+                if (grid.equals("sparse") || grid.equals("paged"))
+                    continue;
+                list.add(gridTick(grid, size, size / 4, size * size / 50));
+                list.add(neighbours(grid, size, size / 4, size * size / 50));
+            }
+        }
+        // the same with every phase timed, for the cost of TickMetrics
+        list.add(measuredTick(100, 25, 200));
+        list.add(measuredTick(500, 125, 5000));
+        for (int size : new int[] { 100, 500 }) {
+            list.add(perception(size, size / 4, size * size / 50, true));
+            list.add(perception(size, size / 4, size * size / 50, false));
+            list.add(captured(size, size / 4, size * size / 50));
+        }
+        // the prey policies on a crowded board, for the cost of smarter preys
+        for (String prey : WolvesTournament.PREYS)
+            list.add(preys(prey, 100, 25, 2000));
+        // EncircleWolf on crowded boards, for the cost of the shared flow fields
+        list.add(encircle(100, 25, 200));
+        list.add(encircle(500, 125, 5000));
+        for (int entries : new int[] { 0, 1000, 100000 })
+            list.add(blackboard(entries));
+        for (int size : new int[] { 50, 200, 500 })
+            list.add(paint(size, Math.max(1, 1000 / size)));
+        list.add(replay(100, 3, 10));
+        list.add(replay(500, 125, 5000));
+        return list;
+    }
+
+    static Wolves world(int size, int numWolves, int numPreys) {
+        return world(size, numWolves, numPreys, RandomWolf::new);
+    }
+
+    static Wolves world(int size, int numWolves, int numPreys, Supplier<Wolf> wolf) {
+        Wolf[] lineup = new Wolf[numWolves];
+        for (int i = 0; i < numWolves; i++)
+            lineup[i] = wolf.get();
+        // nobody ever gets captured, so the world never ends
+        return new Wolves(size, size, lineup, numPreys, 5, numPreys + 1, 9, 42);
+    }
+
+    static Bench tick(int size, int numWolves, int numPreys) {
+        return new Bench("tick " + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            Wolves game;
+            void setup() { game = world(size, numWolves, numPreys); }
+            long op() { game.tick(); return game.getTickCount(); }
+        };
+    }
+
+    static Bench gridTick(String grid, int size, int numWolves, int numPreys) {
+        return new Bench("tick " + grid + " grid " + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            Wolves game;
+            void setup() {
+                Wolf[] lineup = new Wolf[numWolves];
+                for (int i = 0; i < numWolves; i++)
+                    lineup[i] = new RandomWolf();
+                game = new Wolves(WolvesTournament.newGrid(grid, size, size), lineup, numPreys, 5, numPreys + 1, 9, 42);
+            }
+            long op() { game.tick(); return game.getTickCount(); }
+        };
+    }
+
+    // freeNeighbours and adjacent of cells all over the board
+    static Bench neighbours(String grid, int size, int numWolves, int numPreys) {
+        return new Bench("freeNeighbours+adjacent " + grid + " grid " + size + "x" + size) {
+            WolvesGrid cells;
+            int cell;
+            void setup() {
+                cells = WolvesTournament.newGrid(grid, size, size);
+                Wolf[] lineup = new Wolf[numWolves];
+                for (int i = 0; i < numWolves; i++)
+                    lineup[i] = new RandomWolf();
+                new Wolves(cells, lineup, numPreys, 5, numPreys + 1, 9, 42);
+            }
+            long op() {
+                cell = (cell + 7919) % (size * size);
+                int row = cell / size, col = cell % size;
+                return cells.freeNeighbours(row, col) + cells.adjacent(row, col);
+            }
+        };
+    }
+
+    static Bench encircle(int size, int numWolves, int numPreys) {
+        return new Bench("tick encircle " + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            Wolves game;
+            void setup() { game = world(size, numWolves, numPreys, EncircleWolf::new); }
+            long op() { game.tick(); return game.getTickCount(); }
+        };
+    }
+
+    static Bench preys(String prey, int size, int numWolves, int numPreys) {
+        return new Bench("tick " + prey + " preys " + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            Wolves game;
+            void setup() {
+                game = world(size, numWolves, numPreys);
+                game.setPreyPolicy(WolvesTournament.newPreyPolicy(prey, 5));
+            }
+            long op() { game.tick(); return game.getTickCount(); }
+        };
+    }
+
+    static Bench measuredTick(int size, int numWolves, int numPreys) {
+        return new Bench("tick+metrics " + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            Wolves game;
+            void setup() {
+                game = world(size, numWolves, numPreys);
+                game.setMetrics(new TickMetrics());
+            }
+            long op() { game.tick(); return game.getTickCount(); }
+        };
+    }
+
+    static Bench perception(int size, int numWolves, int numPreys, boolean lists) {
+        String what = lists ? "getWolfViewW+P " : "fillView ";
+        return new Bench(what + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            Wolves game;
+            WolfView view = new WolfView(numWolves, numPreys);
+            int wolf;
+            void setup() { game = world(size, numWolves, numPreys); }
+            long op() {
+                wolf = (wolf + 1) % numWolves;
+                if (lists)
+                    return game.getWolfViewW(wolf).size() + game.getWolfViewP(wolf).size();
+                game.fillView(wolf, view);
+                return view.numWolves + view.numPreys;
+            }
+        };
+    }
+
+    static Bench captured(int size, int numWolves, int numPreys) {
+        return new Bench("captured " + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            Wolves game;
+            int cell;
+            void setup() { game = world(size, numWolves, numPreys); }
+            long op() {
+                cell = (cell + 7919) % (size * size);
+                return game.captured(cell / size, cell % size) ? 1 : 0;
+            }
+        };
+    }
+
+    // BlackboardWolf.moveAll after the given number of chases went over the board
+    static Bench blackboard(int entries) {
+        return new Bench("BlackboardWolf.moveAll chases=" + entries) {
+            BlackboardWolf wolf;
+            List<int[]> wolves = new ArrayList<>();
+            List<int[]> preys = new ArrayList<>();
+            void setup() {
+                Pack pack = new Pack();
+                pack.setBoard(100, 100, new int[] { 50 }, new int[] { 50 });
+                Blackboard board = pack.shared(BlackboardWolf.class, () -> new Blackboard(16));
+                for (int i = 0; i < entries; i++)
+                    board.startChase(new BlackboardWolf.PreySighting(1, 1, i, i), i);
+                pack.setTick(entries + 1);
+                wolf = new BlackboardWolf();
+                wolf.joinPack(pack, 0);
+                wolves.add(new int[] { 1, 0 });
+                preys.add(new int[] { 2, 3 });
+            }
+            long op() {
+                int[] move = wolf.moveAll(wolves, preys);
+                return move[0] + move[1];
+            }
+        };
+    }
+
+    static Bench paint(int size, int squaresize) {
+        return new Bench("WolvesUI.paintComponent " + size + "x" + size + " sq=" + squaresize) {
+            WolvesUI ui;
+            Graphics2D g;
+            Wolves game;
+            void setup() {
+                game = world(size, 3, 10);
+                ui = new WolvesUI(game, squaresize);
+                BufferedImage image = new BufferedImage(size * squaresize, size * squaresize, BufferedImage.TYPE_INT_RGB);
+                g = image.createGraphics();
+            }
+            long op() {
+                game.tick();
+                ui.paintComponent(g);
+                return 1;
+            }
+        };
+    }
+
+    // EpisodeReplay.tick of a recorded world, rewinding at the end
+    static Bench replay(int size, int numWolves, int numPreys) {
+        return new Bench("EpisodeReplay.tick " + size + "x" + size + " W=" + numWolves + " P=" + numPreys) {
+            EpisodeReplay replay;
+            void setup() {
+                try {
+                    File file = File.createTempFile("wolves", ".replay");
+                    file.deleteOnExit();
+                    Wolves game = world(size, numWolves, numPreys);
+                    EpisodeRecorder recorder = new EpisodeRecorder(game, file.getPath());
+                    game.addListener(recorder);
+                    game.run(Math.max(1000, 20000000L / (numWolves + numPreys)));
+                    recorder.close();
+                    replay = new EpisodeReplay(file.getPath());
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+            long op() {
+                replay.tick();
+                if (replay.isGameOver())
+                    replay.rewind();
+                return replay.getTickCount();
+            }
+        };
+    }
+
+    static void measure(Bench b, long warmupMs, long timeMs) {
+        b.setup();
+        run(b, warmupMs * 1000000L);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytes = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        long ops = run(b, timeMs * 1000000L);
+        long nanos = System.nanoTime() - start;
+        bytes = threads.getThreadAllocatedBytes(thread) - bytes;
+        System.out.printf("%-44s %14.1f %12.1f %12.1f%n", b.name,
+                nanos / (double) ops, bytes / (double) ops, bytes / (nanos / 1e9) / 1e6);
+    }
+
+    // Runs the operation in batches of about a millisecond until the time
+    // is up, returns how often it ran
+    private static long run(Bench b, long nanos) {
+        long ops = 0;
+        long now = System.nanoTime();
+        long end = now + nanos;
+        int batch = 1;
+        while (now < end) {
+            long begin = now;
+            for (int i = 0; i < batch; i++)
+                sink += b.op();
+            ops += batch;
+            now = System.nanoTime();
+            if (now - begin < 1000000L && batch < 1 << 20)
+                batch *= 2;
+        }
+        return ops;
+    }
+}
@@ -0,0 +1,21 @@
+// Something that plays out tick by tick on a board of wolves and preys:
+// a live Wolves world, or an EpisodeReplay of a recorded one. This is all
+// WolvesUI and WolvesScheduler need to show and drive it.
+public interface WolvesBoard {
+	public abstract int getNumbRows();
+
+	public abstract int getNumbCols();
+
+	public abstract boolean isWolf(int row, int col);
+
+	public abstract boolean isPrey(int row, int col);
+
+	public abstract void tick();
+
+	public abstract boolean isGameOver();
+
+	public abstract long getTickCount();
+
+	// What changed during the last tick
+	public abstract TickDelta getDelta();
+}
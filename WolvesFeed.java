@@ -0,0 +1,593 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+// Streams a running world to browsers, for watching games on a machine
+// without a screen. It serves a page with a canvas viewer and a WebSocket
+// feed on localhost only, so it is reached through a tunnel:
+//
+//     java WolvesFeed -port 8080 -size 200 -wolves 40 -preys 400
+//     ssh -L 8080:localhost:8080 simbox, then open http://localhost:8080/
+//
+// or, from code, new WolvesFeed(8080).watch(game) on any world.
+//
+// The feed is one binary WebSocket message per tick, in the format of
+// EpisodeRecorder, behind a varint message type:
+//
+//     KEY   rows, cols, numWolves, numPreys, tick, the position of every
+//           agent and the captured preys, as in the recording header
+//     TICK  tick, then the tick record of the recording (the moves as
+//           directions, and the new captures)
+//     END   tick, 1 if the wolves won + 2 if it was a stalemate
+//
+// A viewer gets a KEY frame first and TICK frames from then on. The ticking
+// thread only encodes a tick once and offers it to a short queue per
+// viewer; a thread per viewer writes the queue to its socket. When a
+// viewer falls behind and its queue is full, it gets no more ticks until
+// it has written out everything queued, and then a KEY frame of the state
+// of that moment, so a slow viewer skips ahead rather than slowing the
+// engine down. Without viewers a tick costs nothing but a look at the list.
+//
+// Requests are read by a few threads, and a client gets a few seconds to
+// send its request before it is dropped; only a viewer that made it onto
+// the feed gets threads of its own, at most MAX_VIEWERS of them.
+public class WolvesFeed implements WolvesListener, Closeable {
+
+    static final int KEY = 1;
+    static final int TICK = 2;
+    static final int END = 3;
+
+    private static final int QUEUE = 32;   // frames a viewer may be behind before it skips
+    private static final int MAX_VIEWERS = 8;
+    private static final int REQUEST_THREADS = 4;
+    private static final int REQUEST_QUEUE = 16;      // connections waiting for a request thread
+    private static final int REQUEST_TIMEOUT = 5000;  // ms to send the request head in
+    private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+
+    private final ServerSocket server;
+    private final ExecutorService requests;
+    private final CopyOnWriteArrayList<Viewer> viewers = new CopyOnWriteArrayList<>();
+    private volatile boolean closed;
+    private long droppedFrames;
+
+    private byte[] buffer = new byte[256];   // scratch space of the ticking thread
+
+    public WolvesFeed(int port) throws IOException {
+        server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(REQUEST_THREADS, REQUEST_THREADS, 10, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(REQUEST_QUEUE), r -> {
+                    Thread t = new Thread(r, "wolves-feed-request");
+                    t.setDaemon(true);
+                    return t;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        requests = pool;
+        Thread acceptor = new Thread(this::accept, "wolves-feed");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    // The port it listens on, e.g. when it was created with port 0
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public int getNumbViewers() {
+        return viewers.size();
+    }
+
+    // Ticks that were not sent to a viewer because it was behind, over all viewers
+    public synchronized long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    // Streams the given world from its next tick on. Viewers start over with
+    // a KEY frame, so a feed can go from one world to the next.
+    public void watch(Wolves game) {
+        for (Viewer v : viewers)
+            v.resync = true;
+        game.addListener(this);
+    }
+
+    @Override
+    public synchronized void tickCompleted(Wolves game) {
+        if (viewers.isEmpty())
+            return;
+        byte[] tick = null, key = null;
+        for (Viewer v : viewers) {
+            if (v.resync) {
+                if (!v.queue.isEmpty() || v.writing) {
+                    droppedFrames++;   // still catching up
+                    continue;
+                }
+                if (key == null)
+                    key = keyFrame(game);
+                v.resync = !v.queue.offer(key);
+            } else {
+                if (tick == null)
+                    tick = tickFrame(game);
+                if (!v.queue.offer(tick)) {
+                    v.resync = true;
+                    droppedFrames++;
+                }
+            }
+        }
+    }
+
+    @Override
+    public synchronized void gameOver(Wolves game, WolvesResult result) {
+        ensure(16);
+        int pos = EpisodeRecorder.putVarint(buffer, 0, END);
+        pos = EpisodeRecorder.putVarlong(buffer, pos, game.getTickCount());
+        buffer[pos++] = (byte) ((result.isWon() ? 1 : 0) | (result.isStalemate() ? 2 : 0));
+        byte[] end = Arrays.copyOf(buffer, pos);
+        byte[] key = null;
+        for (Viewer v : viewers) {
+            // a viewer that is catching up gets the final state, if there is room for it
+            if (v.resync) {
+                if (key == null)
+                    key = keyFrame(game);
+                v.resync = !v.queue.offer(key);
+            }
+            if (!v.resync)
+                v.queue.offer(end);
+        }
+    }
+
+    private byte[] keyFrame(Wolves game) {
+        ensure(64 + EpisodeRecorder.maxStateBytes(game.getNumbWolves(), game.getNumbPreys()));
+        byte[] b = buffer;
+        int pos = EpisodeRecorder.putVarint(b, 0, KEY);
+        pos = EpisodeRecorder.putVarint(b, pos, game.getNumbRows());
+        pos = EpisodeRecorder.putVarint(b, pos, game.getNumbCols());
+        pos = EpisodeRecorder.putVarint(b, pos, game.getNumbWolves());
+        pos = EpisodeRecorder.putVarint(b, pos, game.getNumbPreys());
+        pos = EpisodeRecorder.putVarlong(b, pos, game.getTickCount());
+        pos = EpisodeRecorder.putState(b, pos, game, game.getResult());
+        return Arrays.copyOf(b, pos);
+    }
+
+    private byte[] tickFrame(Wolves game) {
+        ensure(16 + EpisodeRecorder.maxTickBytes(game.getNumbWolves(), game.getNumbPreys()));
+        int pos = EpisodeRecorder.putVarint(buffer, 0, TICK);
+        pos = EpisodeRecorder.putVarlong(buffer, pos, game.getTickCount());
+        pos = EpisodeRecorder.putTick(buffer, pos, game.getDelta(), game.getNumbRows(), game.getNumbCols());
+        return Arrays.copyOf(buffer, pos);
+    }
+
+    private void ensure(int size) {
+        if (buffer.length < size)
+            buffer = new byte[Math.max(size, 2 * buffer.length)];
+    }
+
+    // Stops serving and disconnects every viewer
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        for (Viewer v : viewers)
+            v.close();
+        requests.shutdownNow();
+        server.close();
+    }
+
+    private void accept() {
+        while (!closed) {
+            Socket socket;
+            try {
+                socket = server.accept();
+            } catch (IOException e) {
+                if (!closed)
+                    System.err.println("wolves feed: " + e.getMessage());
+                return;
+            }
+            try {
+                socket.setSoTimeout(REQUEST_TIMEOUT);
+                requests.execute(() -> serve(socket));
+            } catch (IOException | RejectedExecutionException e) {
+                close(socket);   // too many at once
+            }
+        }
+    }
+
+    // One HTTP request: the viewer page, or the feed, which goes on on
+    // threads of the viewer
+    private void serve(Socket socket) {
+        boolean viewing = false;
+        try {
+            socket.setTcpNoDelay(true);
+            InputStream in = new BufferedInputStream(socket.getInputStream());
+            OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+            String request = readLine(in);
+            if (request == null)
+                return;
+            String key = null;
+            boolean upgrade = false;
+            for (String line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+                int colon = line.indexOf(':');
+                if (colon < 0)
+                    continue;
+                String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(colon + 1).trim();
+                if (name.equals("sec-websocket-key"))
+                    key = value;
+                else if (name.equals("upgrade"))
+                    upgrade = value.equalsIgnoreCase("websocket");
+            }
+            String[] parts = request.split(" ");
+            String path = parts.length > 1 ? parts[1] : "";
+            if (path.equals("/feed") && upgrade && key != null) {
+                Viewer v = new Viewer(socket, out);
+                synchronized (viewers) {
+                    if (viewers.size() >= MAX_VIEWERS) {
+                        respond(out, "503 Service Unavailable", "text/plain", "too many viewers");
+                        return;
+                    }
+                    viewers.add(v);
+                }
+                viewing = true;
+                try {
+                    out.write(("HTTP/1.1 101 Switching Protocols\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+                            + "Sec-WebSocket-Accept: " + accept(key) + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                    socket.setSoTimeout(0);   // a viewer says nothing until it leaves
+                } catch (IOException e) {
+                    viewers.remove(v);
+                    throw e;
+                }
+                Thread sender = new Thread(v::send, "wolves-feed-viewer");
+                sender.setDaemon(true);
+                Thread reader = new Thread(() -> {
+                    try {
+                        v.read(in);
+                    } catch (IOException e) {
+                        // the browser went away
+                    } finally {
+                        viewers.remove(v);
+                        sender.interrupt();
+                        v.close();
+                    }
+                }, "wolves-feed-viewer");
+                reader.setDaemon(true);
+                sender.start();
+                reader.start();
+            } else if (path.equals("/") || path.equals("/index.html")) {
+                respond(out, "200 OK", "text/html; charset=utf-8", VIEWER);
+            } else {
+                respond(out, "404 Not Found", "text/plain", "not found");
+            }
+        } catch (IOException e) {
+            // the browser went away, or took too long to ask
+            viewing = false;
+        } finally {
+            if (!viewing)
+                close(socket);
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // closing anyway
+        }
+    }
+
+    private static void respond(OutputStream out, String status, String type, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        out.write(("HTTP/1.1 " + status + "\r\nContent-Type: " + type + "\r\nContent-Length: " + content.length
+                + "\r\nCache-Control: no-store\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+        out.write(content);
+        out.flush();
+    }
+
+    // A line of the request head, without the line break; null at the end of the stream
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int c = in.read(); c != '\n'; c = in.read()) {
+            if (c < 0)
+                return sb.length() > 0 ? sb.toString() : null;
+            if (c != '\r')
+                sb.append((char) c);
+            if (sb.length() > 8192)
+                throw new IOException("request line too long");
+        }
+        return sb.toString();
+    }
+
+    private static String accept(String key) {
+        try {
+            MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+            byte[] hash = sha1.digest((key + GUID).getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 is always there", e);
+        }
+    }
+
+    // A browser on the feed
+    private static class Viewer {
+        final Socket socket;
+        final OutputStream out;
+        final BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE);
+        volatile boolean resync = true;   // waits for a KEY frame once the queue is written out
+        volatile boolean writing;         // the sender is in the middle of a frame
+
+        Viewer(Socket socket, OutputStream out) {
+            this.socket = socket;
+            this.out = out;
+        }
+
+        // The sender thread: writes queued frames, flushing whenever the queue runs dry
+        void send() {
+            try {
+                while (true) {
+                    byte[] frame = queue.take();
+                    writing = true;
+                    writeFrame(frame);
+                    if (queue.isEmpty())
+                        out.flush();
+                    writing = false;
+                }
+            } catch (InterruptedException | IOException e) {
+                close();
+            }
+        }
+
+        // An unmasked binary frame, all in one
+        private void writeFrame(byte[] payload) throws IOException {
+            out.write(0x82);
+            if (payload.length < 126) {
+                out.write(payload.length);
+            } else if (payload.length < 65536) {
+                out.write(126);
+                out.write(payload.length >>> 8);
+                out.write(payload.length);
+            } else {
+                out.write(127);
+                for (int shift = 56; shift >= 0; shift -= 8)
+                    out.write((int) ((long) payload.length >>> shift));
+            }
+            out.write(payload);
+        }
+
+        // Reads what the browser sends, which is nothing but a close in the
+        // end, and returns when the connection is over
+        void read(InputStream in) throws IOException {
+            while (true) {
+                int b0 = in.read(), b1 = in.read();
+                if (b0 < 0 || b1 < 0 || (b0 & 0x0F) == 0x8)
+                    return;
+                long length = b1 & 0x7F;
+                if (length == 126)
+                    length = (in.read() << 8) | in.read();
+                else if (length == 127)
+                    return;   // nothing a viewer says is that long
+                in.skipNBytes(((b1 & 0x80) != 0 ? 4 : 0) + length);
+            }
+        }
+
+        void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // closing anyway
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = 8080;
+        int size = 100;
+        int wolves = 10;
+        String mix = "blackboard";
+        int preys = 100;
+        double tps = 20;
+        long maxTicks = 100000;
+        long seed = 1;
+        int pause = 2000;
+
+        //Parameters
+        try {
+            for (int tmp = 0; tmp < args.length; tmp++) {
+                if (args[tmp].compareTo("-port") == 0)
+                    port = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-size") == 0)
+                    size = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-wolves") == 0)
+                    wolves = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-lineup") == 0)
+                    mix = args[++tmp];
+                else if (args[tmp].compareTo("-preys") == 0)
+                    preys = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-tps") == 0)
+                    tps = Double.parseDouble(args[++tmp]);
+                else if (args[tmp].compareTo("-maxticks") == 0)
+                    maxTicks = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-seed") == 0)
+                    seed = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-pause") == 0)
+                    pause = Integer.parseInt(args[++tmp]);
+                else
+                    throw new Exception();
+            }
+            WolfFactory.parse(mix);
+            if (size < 3 || wolves < 1 || preys < 1 || tps < 0 || maxTicks < 1 || pause < 0) throw new Exception();
+        }
+        catch (Exception e) {
+            System.err.println("USAGE: java WolvesFeed [-port p] [-size n] [-wolves n] [-lineup mix] [-preys n] [-tps t (0 for full speed)]");
+            System.err.println("       [-maxticks m] [-seed s] [-pause ms between games]");
+            System.exit(-1);
+        }
+
+        WolfFactory factory = WolfFactory.parse(mix);
+        try (WolvesFeed feed = new WolvesFeed(port)) {
+            System.out.printf("viewer on http://localhost:%d/ (ssh -L %d:localhost:%d this host)%n",
+                    feed.getPort(), feed.getPort(), feed.getPort());
+            for (long episode = 0; ; episode++) {
+                Wolves game = new Wolves(size, size, factory.lineup(wolves), preys, 5, 1, 2,
+                        WolvesTournament.seedFor(seed, 0, (int) episode));
+                feed.watch(game);
+                WolvesScheduler scheduler = new WolvesScheduler(game, tps);
+                long start = System.nanoTime();
+                scheduler.start();
+                while (!game.isGameOver() && game.getTickCount() < maxTicks)
+                    Thread.sleep(10);
+                scheduler.stop();
+                scheduler.join();
+                System.out.printf(Locale.ROOT, "game %d: %s in %.1f ms, %d viewers, %d frames dropped%n", episode,
+                        game.getResult().isWon() ? "won" : "not won", (System.nanoTime() - start) / 1e6,
+                        feed.getNumbViewers(), feed.getDroppedFrames());
+                Thread.sleep(pause);
+            }
+        }
+    }
+
+    // The viewer: keeps one pixel per cell in an image, applies the frames
+    // as they come and draws the image scaled up once per animation frame.
+    // Rows run left to right and columns top to bottom, as in WolvesUI.
+    private static final String VIEWER = """
+            <!DOCTYPE html>
+            <html>
+            <head>
+            <meta charset="utf-8">
+            <title>Hungry Hungry Wolves</title>
+            <style>
+            body { margin: 0; background: #202020; color: #d0d0d0; font: 13px monospace; }
+            #status { padding: 6px 8px; }
+            canvas { display: block; margin: 0 8px; image-rendering: pixelated; }
+            </style>
+            </head>
+            <body>
+            <div id="status">connecting</div>
+            <canvas id="board" width="0" height="0"></canvas>
+            <script>
+            const EMPTY = [192, 192, 192], WOLF = [64, 64, 64], PREY = [255, 255, 0], CAUGHT = [255, 140, 0];
+            const DR = [-1, -1, -1, 0, 0, 1, 1, 1], DC = [-1, 0, 1, -1, 1, -1, 0, 1];
+            const MAX_CELLS = 16 << 20;
+            const statusLine = document.getElementById('status');
+            const canvas = document.getElementById('board'), ctx = canvas.getContext('2d');
+            const layer = document.createElement('canvas'), layerCtx = layer.getContext('2d');
+            let rows = 0, cols = 0, numWolves = 0, numPreys = 0, row, col, captured, image = null;
+            let tick = 0, frames = 0, keys = 0, outcome = '', dirty = false, rate = 0, lastTick = 0, lastTime = performance.now();
+            let buf, pos;
+
+            function varint() {
+              let v = 0, m = 1, b;
+              do { b = buf[pos++]; v += (b & 0x7f) * m; m *= 128; } while (b & 0x80);
+              return v;
+            }
+            function unzigzag(v) { return v % 2 ? -(v + 1) / 2 : v / 2; }
+            function set(r, c, rgb) {
+              if (!image) return;
+              const i = 4 * (c * rows + r);
+              image.data[i] = rgb[0]; image.data[i + 1] = rgb[1]; image.data[i + 2] = rgb[2]; image.data[i + 3] = 255;
+            }
+            function paint(code) {
+              set(row[code], col[code], code % 2 ? WOLF : captured[(code - 2) / 2] ? CAUGHT : PREY);
+            }
+
+            function key() {
+              rows = varint(); cols = varint(); numWolves = varint(); numPreys = varint(); tick = varint();
+              const codes = 2 * Math.max(numWolves, numPreys) + 3;
+              row = new Int32Array(codes); col = new Int32Array(codes); captured = new Uint8Array(numPreys);
+              for (let i = 0; i < numWolves; i++) { row[2 * i + 1] = varint(); col[2 * i + 1] = varint(); }
+              for (let i = 0; i < numPreys; i++) { row[2 * i + 2] = varint(); col[2 * i + 2] = varint(); }
+              for (let n = varint(); n > 0; n--) captured[varint()] = 1;
+              image = null;
+              if (rows * cols <= MAX_CELLS) {
+                const scale = Math.max(1, Math.floor(Math.min((innerWidth - 16) / rows, (innerHeight - 40) / cols)));
+                canvas.width = rows * scale; canvas.height = cols * scale;
+                layer.width = rows; layer.height = cols;
+                image = layerCtx.createImageData(rows, cols);
+                for (let i = 0; i < rows * cols; i++) {
+                  image.data.set(EMPTY, 4 * i); image.data[4 * i + 3] = 255;
+                }
+                for (let w = 0; w < numWolves; w++) paint(2 * w + 1);
+                for (let p = 0; p < numPreys; p++) paint(2 * p + 2);
+              }
+              keys++; outcome = ''; lastTick = tick;
+            }
+
+            function step() {
+              tick = varint();
+              let agent = 0;
+              for (let n = varint() - 1; n > 0; n--) {
+                const v = varint();
+                agent += unzigzag(Math.floor(v / 8));
+                const d = v % 8;
+                set(row[agent], col[agent], EMPTY);
+                row[agent] = (row[agent] + DR[d] + rows) % rows;
+                col[agent] = (col[agent] + DC[d] + cols) % cols;
+                paint(agent);
+              }
+              let prey = 0;
+              for (let n = varint(); n > 0; n--) {
+                prey += unzigzag(varint());
+                captured[prey] = 1;
+                paint(2 * prey + 2);
+              }
+            }
+
+            function end() {
+              tick = varint();
+              const flags = buf[pos++];
+              outcome = flags & 2 ? 'stalemate' : flags & 1 ? 'wolves won' : 'game over';
+            }
+
+            function connect() {
+              const ws = new WebSocket('ws://' + location.host + '/feed');
+              ws.binaryType = 'arraybuffer';
+              ws.onmessage = e => {
+                buf = new Uint8Array(e.data); pos = 0;
+                const type = varint();
+                if (type === 1) key(); else if (type === 2) step(); else if (type === 3) end();
+                frames++; dirty = true;
+              };
+              ws.onclose = () => { statusLine.textContent = 'disconnected, retrying'; setTimeout(connect, 1000); };
+            }
+
+            function draw(now) {
+              if (now - lastTime >= 1000) {
+                rate = (tick - lastTick) * 1000 / (now - lastTime);
+                lastTick = tick; lastTime = now;
+              }
+              if (dirty) {
+                if (image) {
+                  layerCtx.putImageData(image, 0, 0);
+                  ctx.imageSmoothingEnabled = false;
+                  ctx.drawImage(layer, 0, 0, canvas.width, canvas.height);
+                }
+                statusLine.textContent = rows + 'x' + cols + '  ' + numWolves + ' wolves  ' + numPreys + ' preys  tick ' + tick
+                    + '  ' + Math.round(rate) + ' ticks/s  ' + frames + ' frames  ' + Math.max(0, keys - 1) + ' resyncs  '
+                    + (image ? '' : 'board too large to draw  ') + outcome;
+                dirty = false;
+              }
+              requestAnimationFrame(draw);
+            }
+
+            connect();
+            requestAnimationFrame(draw);
+            </script>
+            </body>
+            </html>
+            """;
+}
@@ -0,0 +1,58 @@
+// Cell storage of a Wolves world. Next to the occupant of every cell, in
+// the usual encoding (0 empty, 2i+1 wolf i, 2i+2 prey i), a grid keeps
+// the number of wolves on the 8 neighbours of every cell, which is what
+// Wolves.captured() reads. Rows and columns are always already wrapped.
+public interface WolvesGrid {
+	public abstract int getNumbRows();
+
+	public abstract int getNumbCols();
+
+	public abstract int get(int row, int col);
+
+	public abstract void set(int row, int col, int value);
+
+	// Moves the occupant of one cell to another, empty one
+	public default void move(int fromRow, int fromCol, int toRow, int toCol) {
+		int value = get(fromRow, fromCol);
+		set(fromRow, fromCol, 0);
+		set(toRow, toCol, value);
+	}
+
+	public abstract int adjacent(int row, int col);
+
+	public abstract void addAdjacent(int row, int col, int delta);
+
+	// What stands on a cell, by the parity of its code. Grids that know
+	// without the code override them.
+	public default boolean isWolf(int row, int col) {
+		return get(row, col) % 2 == 1;
+	}
+
+	public default boolean isPrey(int row, int col) {
+		int cell = get(row, col);
+		return cell != 0 && cell % 2 == 0;
+	}
+
+	// Adds delta to the wolf count of the 8 neighbours of a cell, as a
+	// wolf arrives on it or leaves it
+	public default void addAdjacentAround(int row, int col, int delta) {
+		int rows = getNumbRows(), cols = getNumbCols();
+		for (int d = 0; d < 8; d++)
+			addAdjacent(Math.floorMod(row + PreyStrips.DR[d], rows), Math.floorMod(col + PreyStrips.DC[d], cols), delta);
+	}
+
+	// The empty neighbours of a cell as 8 bits, bit d for direction d of
+	// PreyStrips.DR/DC, wrapping around the edges. Grids that can read a
+	// neighbourhood faster than cell by cell override it.
+	public default int freeNeighbours(int row, int col) {
+		int rows = getNumbRows(), cols = getNumbCols();
+		int mask = 0;
+		for (int d = 0; d < 8; d++) {
+			int r = Math.floorMod(row + PreyStrips.DR[d], rows);
+			int c = Math.floorMod(col + PreyStrips.DC[d], cols);
+			if (get(r, c) == 0)
+				mask |= 1 << d;
+		}
+		return mask;
+	}
+}
@@ -0,0 +1,14 @@
+// Callbacks a Wolves world sends out while it runs. Both methods are
+// optional, so a renderer only needs tickCompleted and a batch runner
+// only needs gameOver. A world without listeners runs fully headless.
+public interface WolvesListener {
+
+    // Called after every tick, once all agents have moved and the
+    // captures of that tick have been registered.
+    public default void tickCompleted(Wolves game) {
+    }
+
+    // Called exactly once, on the tick where enough preys got captured.
+    public default void gameOver(Wolves game, WolvesResult result) {
+    }
+}
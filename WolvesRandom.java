@@ -0,0 +1,64 @@
+import java.util.Random;
+
+// java.util.Random with its state out in the open, so that a world can be
+// saved and restored in the middle of a game. It is the very same linear
+// congruential generator, so a seed gives exactly the numbers it gives to
+// java.util.Random. Unlike Random it is not safe for use by several
+// threads at once, and its state does not cover a pending nextGaussian.
+//
+// A world draws from a hierarchy of streams under one master seed: the
+// engine uses the master seed itself, and the preys and every wolf get a
+// stream of their own, seeded with seed(master, stream). What one of them
+// draws never shifts the numbers of another, so the outcome does not depend
+// on which thread asks first.
+@SuppressWarnings("serial")
+public class WolvesRandom extends Random {
+
+    // Stream numbers under the master seed; wolf i draws from WOLVES + i
+    static final long PREYS = 0;
+    static final long WOLVES = 1;
+
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private long state;
+
+    public WolvesRandom() {
+        this(new Random().nextLong());
+    }
+
+    public WolvesRandom(long seed) {
+        super(seed);
+    }
+
+    @Override
+    public void setSeed(long seed) {
+        super.setSeed(seed);
+        state = (seed ^ MULTIPLIER) & MASK;
+    }
+
+    @Override
+    protected int next(int bits) {
+        state = (state * MULTIPLIER + ADDEND) & MASK;
+        return (int) (state >>> (48 - bits));
+    }
+
+    // The 48 bits of generator state, to be given back to setState
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state & MASK;
+    }
+
+    // The seed of the given stream under master: SplitMix64, so that
+    // neighbouring streams get unrelated seeds
+    public static long seed(long master, long stream) {
+        long z = master + 0x9E3779B97F4A7C15L * (stream + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,100 @@
+// Outcome of one episode, as returned by Wolves.run(maxTicks)
+// and handed to WolvesListener.gameOver.
+public class WolvesResult {
+
+    private final boolean won;
+    private final boolean stalemate;
+    private final long ticks;
+    private final int[] capturedPreys;   // prey ids, in order of capture
+    private final long[] captureTicks;   // tick on which capturedPreys[i] was caught
+    private final String[] wolfNames;    // class name of each wolf
+    private final long[] wolfMoves;      // moves a wolf asked for (anything but standing still)
+    private final long[] wolfBlocked;    // of those, moves rejected because the cell was taken
+    private final long[] wolfAssists;    // captures the wolf was adjacent to
+    private final long[] wolfMissed;     // decisions not made within the time budget
+
+    public WolvesResult(boolean won, boolean stalemate, long ticks, int[] capturedPreys, long[] captureTicks,
+                        String[] wolfNames, long[] wolfMoves, long[] wolfBlocked, long[] wolfAssists,
+                        long[] wolfMissed) {
+        this.won           = won;
+        this.stalemate     = stalemate;
+        this.ticks         = ticks;
+        this.capturedPreys = capturedPreys;
+        this.captureTicks  = captureTicks;
+        this.wolfNames     = wolfNames;
+        this.wolfMoves     = wolfMoves;
+        this.wolfBlocked   = wolfBlocked;
+        this.wolfAssists   = wolfAssists;
+        this.wolfMissed    = wolfMissed;
+    }
+
+    // true if the wolves captured minCaptured preys, false if the run hit maxTicks
+    // first or ended in a stalemate
+    public boolean isWon() {
+        return won;
+    }
+
+    // true if the game was called off for lack of progress, see Wolves.setStalemate
+    public boolean isStalemate() {
+        return stalemate;
+    }
+
+    // ticks played; for a won game this is the number of ticks it took to win
+    public long getTicks() {
+        return ticks;
+    }
+
+    public int getNumbCaptured() {
+        return capturedPreys.length;
+    }
+
+    public int getCapturedPrey(int i) {
+        return capturedPreys[i];
+    }
+
+    public long getCaptureTick(int i) {
+        return captureTicks[i];
+    }
+
+    public int getNumbWolves() {
+        return wolfNames.length;
+    }
+
+    public String getWolfName(int wolf) {
+        return wolfNames[wolf];
+    }
+
+    public long getWolfMoves(int wolf) {
+        return wolfMoves[wolf];
+    }
+
+    public long getWolfBlocked(int wolf) {
+        return wolfBlocked[wolf];
+    }
+
+    public long getWolfAssists(int wolf) {
+        return wolfAssists[wolf];
+    }
+
+    public long getWolfMissed(int wolf) {
+        return wolfMissed[wolf];
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(won ? "won in " : stalemate ? "stalemate after " : "not won after ").append(ticks).append(" ticks, captures:");
+        for (int i = 0; i < capturedPreys.length; i++) {
+            sb.append(' ').append(capturedPreys[i]).append('@').append(captureTicks[i]);
+        }
+        for (int i = 0; i < wolfNames.length; i++) {
+            sb.append("\n  wolf ").append(i).append(" (").append(wolfNames[i]).append("): ")
+              .append(wolfMoves[i]).append(" moves, ")
+              .append(wolfBlocked[i]).append(" blocked, ")
+              .append(wolfAssists[i]).append(" assists");
+            if (wolfMissed[i] > 0)
+                sb.append(", ").append(wolfMissed[i]).append(" missed decisions");
+        }
+        return sb.toString();
+    }
+}
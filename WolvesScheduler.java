@@ -0,0 +1,150 @@
+import java.util.concurrent.locks.LockSupport;
+
+// Runs a Wolves world, or a replay, on a thread of its own at a fixed rate of ticks per
+// second, or as fast as possible, independently of how often the window
+// repaints. Every tick has a scheduled time; when the engine falls behind
+// it either catches up by running the missed ticks back to back, or skips
+// them and carries on from now. The lag between the scheduled and the
+// actual start of the last tick is reported, so one can see whether the
+// engine keeps up with the requested rate.
+public class WolvesScheduler implements Runnable {
+
+    public enum Policy {
+        CATCH_UP,   // run missed ticks back to back, at most maxBurst in a row
+        SKIP        // drop missed ticks and re-anchor the schedule at now
+    }
+
+    private final WolvesBoard game;
+    private volatile long period;          // nanoseconds per tick, 0 for unbounded
+    private volatile Policy policy = Policy.CATCH_UP;
+    private volatile int maxBurst = 10;
+    private volatile boolean paused = false;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // Measurements, written by the scheduler thread only
+    private volatile long lastLag;
+    private volatile long maxLag;
+    private volatile long skipped;
+    private volatile double ticksPerSecond;
+
+    public WolvesScheduler(WolvesBoard game, double targetTicksPerSecond) {
+        this.game = game;
+        setTicksPerSecond(targetTicksPerSecond);
+    }
+
+    // 0 or less means unbounded: tick as fast as the engine can
+    public void setTicksPerSecond(double tps) {
+        period = tps > 0 ? (long) (1e9 / tps) : 0;
+    }
+
+    public void setPolicy(Policy policy) {
+        this.policy = policy;
+    }
+
+    // Longest run of catch-up ticks before the schedule is re-anchored,
+    // so that a long stall does not turn into a long burst afterwards
+    public void setMaxBurst(int maxBurst) {
+        this.maxBurst = Math.max(1, maxBurst);
+    }
+
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        if (!paused && thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        thread = new Thread(this, "wolves-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        if (thread != null)
+            LockSupport.unpark(thread);
+    }
+
+    // Blocks until the game is over or the scheduler has been stopped
+    public void join() throws InterruptedException {
+        Thread t = thread;
+        if (t != null)
+            t.join();
+    }
+
+    @Override
+    public void run() {
+        long next = System.nanoTime();
+        long windowStart = next;
+        long windowTicks = 0;
+        int burst = 0;
+        while (running && !game.isGameOver()) {
+            long now = System.nanoTime();
+            if (now - windowStart >= 1000000000L) {
+                ticksPerSecond = windowTicks * 1e9 / (now - windowStart);
+                windowStart = now;
+                windowTicks = 0;
+            }
+            if (paused) {
+                LockSupport.parkNanos(this, 50000000L);
+                next = System.nanoTime();
+                continue;
+            }
+            long p = period;
+            if (p == 0) {
+                lastLag = 0;
+                game.tick();
+                windowTicks++;
+                continue;
+            }
+            if (now < next) {
+                burst = 0;
+                LockSupport.parkNanos(this, next - now);
+                continue;
+            }
+            long lag = now - next;
+            lastLag = lag;
+            if (lag > maxLag)
+                maxLag = lag;
+            if (lag >= p && (policy == Policy.SKIP || burst >= maxBurst)) {
+                // give up on the ticks we are behind and start over from now
+                skipped += lag / p;
+                next = now;
+                burst = 0;
+            } else if (lag >= p) {
+                burst++;
+            }
+            game.tick();
+            windowTicks++;
+            next += p;
+        }
+        running = false;
+    }
+
+    // Delay between the scheduled and the actual start of the last tick
+    public long getTickLagNanos() {
+        return lastLag;
+    }
+
+    public long getMaxTickLagNanos() {
+        return maxLag;
+    }
+
+    // Ticks dropped by the SKIP policy, or by re-anchoring after a burst
+    public long getSkippedTicks() {
+        return skipped;
+    }
+
+    // Ticks actually run during the last full second
+    public double getTicksPerSecond() {
+        return ticksPerSecond;
+    }
+}
@@ -0,0 +1,247 @@
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// A complete Wolves world between two ticks, taken with Wolves.snapshot():
+// the agents, the captures, the tick count, the shuffle order, the random
+// generator, the per-wolf statistics, and the state of every wolf and every
+// piece of pack state that implements Snapshottable.
+//
+// Wolves.restore puts a world back to a snapshot. fork starts a new world
+// from it, with wolves of your choice; the board of a forked world shares
+// its pages with the snapshot until agents move on them, see PagedGrid, so
+// branching thousands of continuations from one position is cheap.
+//
+// toBytes gives a compact binary form, with the board left out as it
+// follows from where the agents are. A snapshot read back with fromBytes
+// builds a board of its own on the first fork.
+//
+// Apart from the wolf visibility, the decision and prey modes, metrics,
+// prey policy, stalemate detection and listeners are not part of a snapshot; set them
+// again on a forked world. A restored world starts its stalemate windows
+// over.
+public class WolvesSnapshot {
+
+    private static final int MAGIC = 0x574F5353;   // "WOSS"
+    private static final int VERSION = 3;
+
+    int rows, cols;
+    int numWolves, numPreys;
+    int visibility, wolfVisibility, minCaptured, min_surround;
+    long tickcounter;
+    boolean gameOver;
+    boolean stalemate;
+    long seed;               // the master seed, see WolvesRandom
+    long random;             // state of the engine stream
+    int[] index;
+    int[] wolfRow, wolfCol, preyRow, preyCol;
+    int[] captured;          // in order of capture
+    long[] captureTicks;
+    long[] wolfMoves, wolfBlocked, wolfAssists, wolfMissed;
+    String[] wolfNames;
+    byte[][] wolfState;      // null for wolves that are not Snapshottable
+    byte[] packState;
+    private PagedGrid board;   // null until known or built
+
+    WolvesSnapshot() {
+    }
+
+    // A new world that carries on from this snapshot with the given wolves,
+    // which must be of the same classes as in the snapshotted world wherever
+    // a wolf state was saved. Fresh wolf objects, as worlds run independently.
+    public Wolves fork(Wolf[] lineup) {
+        return new Wolves(this, lineup);
+    }
+
+    public long getTickCount() {
+        return tickcounter;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    // The board to start a fork on, built from the agents the first time
+    // it is needed. Null for boards too large to keep in pages.
+    synchronized PagedGrid board() {
+        if (board == null && (long) rows * cols <= 1 << 24) {
+            PagedGrid grid = new PagedGrid(rows, cols);
+            for (int i = 0; i < numWolves; i++) {
+                grid.set(wolfRow[i], wolfCol[i], 2 * i + 1);
+                for (int dr = -1; dr <= 1; dr++)
+                    for (int dc = -1; dc <= 1; dc++)
+                        if (dr != 0 || dc != 0)
+                            grid.addAdjacent(Math.floorMod(wolfRow[i] + dr, rows), Math.floorMod(wolfCol[i] + dc, cols), 1);
+            }
+            for (int i = 0; i < numPreys; i++)
+                grid.set(preyRow[i], preyCol[i], 2 * i + 2);
+            board = grid;
+        }
+        return board;
+    }
+
+    void setBoard(PagedGrid board) {
+        this.board = board;
+    }
+
+    public byte[] toBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            writeVarint(out, VERSION);
+            writeVarint(out, rows);
+            writeVarint(out, cols);
+            writeVarint(out, numWolves);
+            writeVarint(out, numPreys);
+            writeVarint(out, visibility);
+            writeVarint(out, wolfVisibility + 1);
+            writeVarint(out, minCaptured);
+            writeVarint(out, min_surround);
+            out.writeLong(tickcounter);
+            out.writeBoolean(gameOver);
+            out.writeBoolean(stalemate);
+            out.writeLong(seed);
+            out.writeLong(random);
+            for (int i = 0; i < numWolves; i++) {
+                writeVarint(out, index[i]);
+                writeVarint(out, wolfRow[i]);
+                writeVarint(out, wolfCol[i]);
+                out.writeLong(wolfMoves[i]);
+                out.writeLong(wolfBlocked[i]);
+                out.writeLong(wolfAssists[i]);
+                out.writeLong(wolfMissed[i]);
+                out.writeUTF(wolfNames[i]);
+                writeBytes(out, wolfState[i]);
+            }
+            for (int i = 0; i < numPreys; i++) {
+                writeVarint(out, preyRow[i]);
+                writeVarint(out, preyCol[i]);
+            }
+            writeVarint(out, captured.length);
+            for (int i = 0; i < captured.length; i++) {
+                writeVarint(out, captured[i]);
+                out.writeLong(captureTicks[i]);
+            }
+            writeBytes(out, packState);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static WolvesSnapshot fromBytes(byte[] data) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC)
+            throw new IOException("not a Wolves snapshot");
+        int version = readVarint(in);
+        if (version != VERSION)
+            throw new IOException("snapshot version " + version + " not supported");
+        WolvesSnapshot s = new WolvesSnapshot();
+        s.rows = readVarint(in);
+        s.cols = readVarint(in);
+        s.numWolves = readVarint(in);
+        s.numPreys = readVarint(in);
+        s.visibility = readVarint(in);
+        s.wolfVisibility = readVarint(in) - 1;
+        s.minCaptured = readVarint(in);
+        s.min_surround = readVarint(in);
+        s.tickcounter = in.readLong();
+        s.gameOver = in.readBoolean();
+        s.stalemate = in.readBoolean();
+        s.seed = in.readLong();
+        s.random = in.readLong();
+        int n = s.numWolves;
+        s.index = new int[n];
+        s.wolfRow = new int[n];
+        s.wolfCol = new int[n];
+        s.wolfMoves = new long[n];
+        s.wolfBlocked = new long[n];
+        s.wolfAssists = new long[n];
+        s.wolfMissed = new long[n];
+        s.wolfNames = new String[n];
+        s.wolfState = new byte[n][];
+        for (int i = 0; i < n; i++) {
+            s.index[i] = readVarint(in);
+            s.wolfRow[i] = readVarint(in);
+            s.wolfCol[i] = readVarint(in);
+            s.wolfMoves[i] = in.readLong();
+            s.wolfBlocked[i] = in.readLong();
+            s.wolfAssists[i] = in.readLong();
+            s.wolfMissed[i] = in.readLong();
+            s.wolfNames[i] = in.readUTF();
+            s.wolfState[i] = readBytes(in);
+        }
+        s.preyRow = new int[s.numPreys];
+        s.preyCol = new int[s.numPreys];
+        for (int i = 0; i < s.numPreys; i++) {
+            s.preyRow[i] = readVarint(in);
+            s.preyCol[i] = readVarint(in);
+        }
+        s.captured = new int[readVarint(in)];
+        s.captureTicks = new long[s.captured.length];
+        for (int i = 0; i < s.captured.length; i++) {
+            s.captured[i] = readVarint(in);
+            s.captureTicks[i] = in.readLong();
+        }
+        s.packState = readBytes(in);
+        return s;
+    }
+
+    // Runs save into a byte array, for the state of a wolf or of a pack
+    static byte[] save(Snapshottable state) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            state.save(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    static void restore(Snapshottable state, byte[] data) {
+        try {
+            state.restore(new DataInputStream(new ByteArrayInputStream(data)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // null is written as length 0 and read back as null
+    private static void writeBytes(DataOutput out, byte[] b) throws IOException {
+        writeVarint(out, b == null ? 0 : b.length + 1);
+        if (b != null)
+            out.write(b);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int n = readVarint(in);
+        if (n == 0)
+            return null;
+        byte[] b = new byte[n - 1];
+        in.readFully(b);
+        return b;
+    }
+
+    static void writeVarint(DataOutput out, int v) throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarint(DataInput in) throws IOException {
+        int v = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = in.readByte();
+            v |= (b & 0x7F) << shift;
+            if (b >= 0)
+                return v;
+        }
+    }
+}
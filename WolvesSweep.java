@@ -0,0 +1,286 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+// Searches the game and strategy parameters for the configurations in which
+// the wolves win fastest, by successive halving: every configuration plays
+// a few episodes, the better 1/eta of them go on to play eta times as many,
+// and so on until one is left. Most episodes go to the promising corner of
+// the space instead of being spread over configurations that are clearly
+// bad after a handful of games.
+//
+//     java WolvesSweep -size 30,50 -preys 5,10 -strategy blackboard,encircle -chase 25,50,100
+//
+// A configuration scores the mean ticks of its episodes, with a lost episode
+// counting as maxTicks; lower is better. With -stalemate, episodes that go
+// nowhere are called off early and count as lost, which saves most of the
+// time hopeless configurations would otherwise take. Its episodes get their seeds from
+// the master seed, the configuration and the episode number as in
+// WolvesTournament, so the outcome does not depend on the number of
+// threads, and an episode played in one round counts in the later ones.
+//
+// Every episode is written to the CSV file as soon as it is over, so a
+// long sweep can be watched, or cut short, while it runs.
+public class WolvesSweep {
+
+    // One point of the parameter space
+    static class Config {
+        final int index;   // in the order of addGrid, for the seeds
+        final int size, numWolves, numPreys, visibility, minCaptured, min_surround;
+        final String strategy;
+        final long chase;   // chase duration, for the strategies that have one
+
+        // Episodes played so far and their ticks, lost ones as maxTicks
+        int episodes;
+        int wins;
+        long totalTicks;
+
+        Config(int index, int size, int numWolves, int numPreys, int visibility, int minCaptured, int min_surround,
+               String strategy, long chase) {
+            this.index = index;
+            this.size = size;
+            this.numWolves = numWolves;
+            this.numPreys = numPreys;
+            this.visibility = visibility;
+            this.minCaptured = minCaptured;
+            this.min_surround = min_surround;
+            this.strategy = strategy;
+            this.chase = chase;
+        }
+
+        double getScore() {
+            return episodes == 0 ? Double.NaN : totalTicks / (double) episodes;
+        }
+
+        Wolf[] lineup() {
+            Wolf[] wolves = new Wolf[numWolves];
+            for (int i = 0; i < numWolves; i++)
+                wolves[i] = newWolf(strategy, chase);
+            return wolves;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "size=%d wolves=%d preys=%d visibility=%d mincaptured=%d surround=%d %s%s",
+                    size, numWolves, numPreys, visibility, minCaptured, min_surround, strategy,
+                    usesChase(strategy) ? " chase=" + chase : "");
+        }
+    }
+
+    // Any strategy registered with WolfFactory; BlackboardWolf gets the chase duration
+    static Wolf newWolf(String strategy, long chase) {
+        return usesChase(strategy) ? new BlackboardWolf(chase) : WolfFactory.create(strategy);
+    }
+
+    static boolean usesChase(String strategy) {
+        return strategy.equals("blackboard");
+    }
+
+    private final List<Config> configs = new ArrayList<>();
+    private final long maxTicks;
+    private final PrintWriter csv;
+    private long stalemateTicks;
+    private int stalemateHistory, stalemateRepeats;
+
+    public WolvesSweep(long maxTicks, PrintWriter csv) {
+        this.maxTicks = maxTicks;
+        this.csv = csv;
+        csv.println("round,config,size,wolves,preys,visibility,mincaptured,surround,strategy,chase,episode,seed,ticks,won,stalemate");
+        csv.flush();
+    }
+
+    // Adds every combination of the given values. A chase duration is only
+    // varied for strategies that have one, and combinations that would need
+    // more captures than there are preys are left out.
+    public void addGrid(int[] sizes, int[] wolves, int[] preys, int[] visibilities, int[] minCaptured,
+                        int[] surround, String[] strategies, long[] chases) {
+        for (int size : sizes)
+            for (int w : wolves)
+                for (int p : preys)
+                    for (int v : visibilities)
+                        for (int m : minCaptured)
+                            for (int s : surround) {
+                                if (m > p)
+                                    continue;
+                                for (String strategy : strategies)
+                                    for (int c = 0; c < (usesChase(strategy) ? chases.length : 1); c++)
+                                        configs.add(new Config(configs.size(), size, w, p, v, m, s, strategy, chases[c]));
+                            }
+    }
+
+    // Calls episodes off as in Wolves.setStalemate
+    public void setStalemate(long noCaptureTicks, int history, int maxRepeats) {
+        this.stalemateTicks = noCaptureTicks;
+        this.stalemateHistory = history;
+        this.stalemateRepeats = maxRepeats;
+    }
+
+    public int getNumbConfigs() {
+        return configs.size();
+    }
+
+    // Runs the halving rounds and returns the configurations that made it to
+    // the last round, best first; none if there are no configurations
+    public List<Config> run(int firstEpisodes, int eta, long masterSeed, int threads) {
+        List<Config> alive = new ArrayList<>(configs);
+        if (alive.isEmpty())
+            return alive;
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            int episodes = firstEpisodes;
+            for (int round = 0; ; round++) {
+                List<Callable<Void>> games = new ArrayList<>();
+                for (Config c : alive) {
+                    for (int e = c.episodes; e < episodes; e++) {
+                        final int r = round, episode = e;
+                        games.add(() -> {
+                            play(r, c, episode, masterSeed);
+                            return null;
+                        });
+                    }
+                }
+                for (Future<Void> game : pool.invokeAll(games)) {
+                    try {
+                        game.get();
+                    } catch (ExecutionException e) {
+                        throw new IllegalStateException("an episode failed", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IllegalStateException("interrupted while sweeping", e);
+                    }
+                }
+                alive.sort(Comparator.comparingDouble(Config::getScore));
+                System.out.printf(Locale.ROOT, "round %d: %d configurations, %d episodes each, best %.1f ticks: %s%n",
+                        round, alive.size(), episodes, alive.get(0).getScore(), alive.get(0));
+                if (alive.size() <= 1)
+                    return alive;
+                alive = new ArrayList<>(alive.subList(0, Math.max(1, alive.size() / eta)));
+                episodes *= eta;
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private void play(int round, Config c, int episode, long masterSeed) {
+        long seed = WolvesTournament.seedFor(masterSeed, c.index, episode);
+        Wolves game = new Wolves(c.size, c.size, c.lineup(), c.numPreys, c.visibility, c.minCaptured, c.min_surround, seed);
+        game.setStalemate(stalemateTicks, stalemateHistory, stalemateRepeats);
+        WolvesResult result = game.run(maxTicks);
+        long ticks = result.isWon() ? result.getTicks() : maxTicks;
+        synchronized (this) {
+            c.episodes++;
+            if (result.isWon())
+                c.wins++;
+            c.totalTicks += ticks;
+            csv.printf(Locale.ROOT, "%d,%d,%d,%d,%d,%d,%d,%d,%s,%d,%d,%d,%d,%b,%b%n", round, c.index, c.size, c.numWolves,
+                    c.numPreys, c.visibility, c.minCaptured, c.min_surround, c.strategy,
+                    usesChase(c.strategy) ? c.chase : 0, episode, seed, result.getTicks(), result.isWon(),
+                    result.isStalemate());
+            csv.flush();
+            if (csv.checkError())
+                throw new UncheckedIOException(new IOException("could not write the results"));
+        }
+    }
+
+    private static int[] ints(String list) {
+        return Arrays.stream(list.split(",")).mapToInt(Integer::parseInt).toArray();
+    }
+
+    private static long[] longs(String list) {
+        return Arrays.stream(list.split(",")).mapToLong(Long::parseLong).toArray();
+    }
+
+    public static void main(String[] args) throws IOException {
+        int[] sizes = { 50 };
+        int[] wolves = { 3 };
+        int[] preys = { 10 };
+        int[] visibilities = { 5 };
+        int[] minCaptured = { 1 };
+        int[] surround = { 2 };
+        String[] strategies = WolfFactory.getNames().toArray(new String[0]);
+        long[] chases = { BlackboardWolf.CHASE_DURATION };
+        int episodes = 8;
+        int eta = 2;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        long maxTicks = 100000;
+        String out = "sweep.csv";
+        long[] stalemate = { 0, 0, 0 };
+
+        //Parameters
+        try {
+            for (int tmp = 0; tmp < args.length; tmp++) {
+                if (args[tmp].compareTo("-size") == 0)
+                    sizes = ints(args[++tmp]);
+                else if (args[tmp].compareTo("-wolves") == 0)
+                    wolves = ints(args[++tmp]);
+                else if (args[tmp].compareTo("-preys") == 0)
+                    preys = ints(args[++tmp]);
+                else if (args[tmp].compareTo("-visibility") == 0)
+                    visibilities = ints(args[++tmp]);
+                else if (args[tmp].compareTo("-mincaptured") == 0)
+                    minCaptured = ints(args[++tmp]);
+                else if (args[tmp].compareTo("-surround") == 0)
+                    surround = ints(args[++tmp]);
+                else if (args[tmp].compareTo("-strategy") == 0)
+                    strategies = args[++tmp].split(",");
+                else if (args[tmp].compareTo("-chase") == 0)
+                    chases = longs(args[++tmp]);
+                else if (args[tmp].compareTo("-episodes") == 0)
+                    episodes = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-eta") == 0)
+                    eta = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-threads") == 0)
+                    threads = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-seed") == 0)
+                    seed = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-maxticks") == 0)
+                    maxTicks = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-out") == 0)
+                    out = args[++tmp];
+                else if (args[tmp].compareTo("-stalemate") == 0)
+                    stalemate = WolvesTournament.stalemate(args[++tmp]);
+                else
+                    throw new Exception();
+            }
+            for (String s : strategies)
+                newWolf(s, 1);
+            if (episodes < 1 || eta < 2 || threads < 1 || maxTicks < 1) throw new Exception();
+            for (int s : sizes)
+                if (s < 3) throw new Exception();
+        }
+        catch (Exception e) {
+            System.err.println("USAGE: java WolvesSweep [-size a,b,..] [-wolves ..] [-preys ..] [-visibility ..] [-mincaptured ..] [-surround ..]");
+            System.err.println("       [-strategy " + String.join(",", WolfFactory.getNames()) + "] [-chase ..] [-episodes n] [-eta e] [-threads t] [-seed s] [-maxticks m] [-out file.csv]");
+            System.err.println("       [-stalemate ticks[,history,repeats]]");
+            System.exit(-1);
+        }
+
+        try (PrintWriter csv = new PrintWriter(new FileWriter(out))) {
+            WolvesSweep sweep = new WolvesSweep(maxTicks, csv);
+            sweep.setStalemate(stalemate[0], (int) stalemate[1], (int) stalemate[2]);
+            sweep.addGrid(sizes, wolves, preys, visibilities, minCaptured, surround, strategies, chases);
+            System.out.println(sweep.getNumbConfigs() + " configurations, results in " + out);
+            long start = System.nanoTime();
+            List<Config> best = sweep.run(episodes, eta, seed, threads);
+            if (best.isEmpty()) {
+                System.err.println("No configuration to play: every one needs more captures than it has preys");
+                System.exit(-1);
+            }
+            Config c = best.get(0);
+            System.out.printf(Locale.ROOT, "best: %s%n  %.1f ticks over %d episodes, %d won, in %.1f s%n",
+                    c, c.getScore(), c.episodes, c.wins, (System.nanoTime() - start) / 1e9);
+        }
+    }
+}
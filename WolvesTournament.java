@@ -0,0 +1,376 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+// Plays many independent Wolves worlds at the same time on a fork-join pool
+// and combines the win-time distribution of every wolf lineup.
+//
+// Every episode gets its own world and its own seed, derived from the master
+// seed, the lineup and the episode number. Which worker plays an episode has
+// no influence on its outcome, so a tournament gives the same statistics on
+// one thread as on all cores.
+public class WolvesTournament {
+
+    // A named way to build the wolves of one world. The supplier must return
+    // fresh wolf objects on every call, as worlds run concurrently.
+    static class Lineup {
+        final String name;
+        final Supplier<Wolf[]> wolves;
+
+        Lineup(String name, Supplier<Wolf[]> wolves) {
+            this.name   = name;
+            this.wolves = wolves;
+        }
+    }
+
+    // Win times of one lineup, in episode order
+    public static class LineupStats {
+        private final String name;
+        private final long[] ticks;
+        private final boolean[] won;
+
+        LineupStats(String name, long[] ticks, boolean[] won) {
+            this.name  = name;
+            this.ticks = ticks;
+            this.won   = won;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getEpisodes() {
+            return ticks.length;
+        }
+
+        public int getWins() {
+            int wins = 0;
+            for (boolean w : won)
+                if (w) wins++;
+            return wins;
+        }
+
+        // Sorted ticks-to-win of all won episodes
+        public long[] getWinTimes() {
+            long[] times = new long[getWins()];
+            int n = 0;
+            for (int i = 0; i < ticks.length; i++)
+                if (won[i]) times[n++] = ticks[i];
+            Arrays.sort(times);
+            return times;
+        }
+
+        public double getMeanWinTime() {
+            long[] times = getWinTimes();
+            if (times.length == 0) return Double.NaN;
+            double sum = 0;
+            for (long t : times) sum += t;
+            return sum / times.length;
+        }
+
+        // p in [0,1]; nearest-rank percentile of the win times
+        public long getWinTimePercentile(double p) {
+            long[] times = getWinTimes();
+            if (times.length == 0) return -1;
+            int rank = (int) Math.ceil(p * times.length) - 1;
+            return times[Math.max(0, Math.min(times.length - 1, rank))];
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-12s %7d episodes %7d wins  mean %9.1f  p10 %6d  p50 %6d  p90 %6d  max %6d",
+                    name, getEpisodes(), getWins(), getMeanWinTime(),
+                    getWinTimePercentile(0.1), getWinTimePercentile(0.5),
+                    getWinTimePercentile(0.9), getWinTimePercentile(1.0));
+        }
+    }
+
+    private final int rows, cols, numPreys, visibility, minCaptured, min_surround;
+    private final long maxTicks;
+    private final List<Lineup> lineups = new ArrayList<>();
+
+    // Throughput figures of the last run
+    private long wallNanos;
+    private long episodesPlayed;
+    private final Map<String, AtomicLong> busyNanos = new ConcurrentHashMap<>();
+    private TickMetrics metrics;
+    private long stalemateTicks;
+    private int stalemateHistory, stalemateRepeats;
+    private PreyPolicy preyPolicy = new RandomPrey();
+    private String grid = "dense";
+
+    public WolvesTournament(int rows, int cols, int numPreys, int visibility, int minCaptured, int min_surround, long maxTicks) {
+        this.rows = rows;
+        this.cols = cols;
+        this.numPreys = numPreys;
+        this.visibility = visibility;
+        this.minCaptured = minCaptured;
+        this.min_surround = min_surround;
+        this.maxTicks = maxTicks;
+    }
+
+    public void addLineup(String name, Supplier<Wolf[]> wolves) {
+        lineups.add(new Lineup(name, wolves));
+    }
+
+    // Sums the tick timings of every episode into the given metrics, null to stop
+    public void setMetrics(TickMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    // Calls episodes off as in Wolves.setStalemate; a stalemate counts as lost
+    public void setStalemate(long noCaptureTicks, int history, int maxRepeats) {
+        this.stalemateTicks = noCaptureTicks;
+        this.stalemateHistory = history;
+        this.stalemateRepeats = maxRepeats;
+    }
+
+    // How the preys of every episode move
+    public void setPreyPolicy(PreyPolicy policy) {
+        this.preyPolicy = policy;
+    }
+
+    // The grid of every episode, by name, see newGrid
+    public void setGrid(String grid) {
+        newGrid(grid, 3, 3);
+        this.grid = grid;
+    }
+
+    // Plays the given number of episodes for every lineup on a pool of the
+    // given number of threads and returns the statistics per lineup.
+    public List<LineupStats> run(int episodes, long masterSeed, int threads) {
+        int numLineups = lineups.size();
+        long[][] ticks = new long[numLineups][episodes];
+        boolean[][] won = new boolean[numLineups][episodes];
+        busyNanos.clear();
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long start = System.nanoTime();
+        try {
+            pool.invoke(new Episodes(0, numLineups * episodes, episodes, masterSeed, ticks, won));
+        } finally {
+            pool.shutdown();
+        }
+        wallNanos = System.nanoTime() - start;
+        episodesPlayed = (long) numLineups * episodes;
+
+        List<LineupStats> stats = new ArrayList<>();
+        for (int l = 0; l < numLineups; l++)
+            stats.add(new LineupStats(lineups.get(l).name, ticks[l], won[l]));
+        return stats;
+    }
+
+    // Splits a range of (lineup, episode) pairs until it is small enough to play
+    @SuppressWarnings("serial")
+    private class Episodes extends RecursiveAction {
+        private static final int CHUNK = 4;
+        private final int from, to, episodes;
+        private final long masterSeed;
+        private final long[][] ticks;
+        private final boolean[][] won;
+
+        Episodes(int from, int to, int episodes, long masterSeed, long[][] ticks, boolean[][] won) {
+            this.from = from;
+            this.to = to;
+            this.episodes = episodes;
+            this.masterSeed = masterSeed;
+            this.ticks = ticks;
+            this.won = won;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new Episodes(from, mid, episodes, masterSeed, ticks, won),
+                          new Episodes(mid, to, episodes, masterSeed, ticks, won));
+                return;
+            }
+            long begin = System.nanoTime();
+            for (int i = from; i < to; i++) {
+                int lineup = i / episodes;
+                int episode = i % episodes;
+                Wolves game = new Wolves(newGrid(grid, rows, cols), lineups.get(lineup).wolves.get(), numPreys,
+                        visibility, minCaptured, min_surround, seedFor(masterSeed, lineup, episode));
+                TickMetrics episodeMetrics = metrics != null ? new TickMetrics() : null;
+                game.setMetrics(episodeMetrics);
+                game.setStalemate(stalemateTicks, stalemateHistory, stalemateRepeats);
+                game.setPreyPolicy(preyPolicy);
+                WolvesResult result = game.run(maxTicks);
+                if (episodeMetrics != null)
+                    metrics.merge(episodeMetrics);
+                ticks[lineup][episode] = result.getTicks();
+                won[lineup][episode] = result.isWon();
+            }
+            busyNanos.computeIfAbsent(Thread.currentThread().getName(), k -> new AtomicLong())
+                     .addAndGet(System.nanoTime() - begin);
+        }
+    }
+
+    // SplitMix64 finalizer over (seed, lineup, episode), so that neighbouring
+    // episodes get unrelated seeds
+    static long seedFor(long masterSeed, int lineup, int episode) {
+        long z = masterSeed + 0x9E3779B97F4A7C15L * (((long) lineup << 32) + episode + 1);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    public double getEpisodesPerSecond() {
+        return episodesPlayed / (wallNanos / 1e9);
+    }
+
+    // Fraction of the wall time each worker spent playing episodes
+    public Map<String, Double> getWorkerUtilisation() {
+        Map<String, Double> util = new java.util.TreeMap<>();
+        for (Map.Entry<String, AtomicLong> e : busyNanos.entrySet())
+            util.put(e.getKey(), e.getValue().get() / (double) wallNanos);
+        return util;
+    }
+
+    public void printReport(List<LineupStats> stats) {
+        for (LineupStats s : stats)
+            System.out.println(s);
+        System.out.printf("%d episodes in %.2f s: %.1f episodes/s%n",
+                episodesPlayed, wallNanos / 1e9, getEpisodesPerSecond());
+        for (Map.Entry<String, Double> e : getWorkerUtilisation().entrySet())
+            System.out.printf("  %-28s %5.1f%% busy%n", e.getKey(), 100 * e.getValue());
+    }
+
+    static final String[] PREYS = { "random", "flee", "flock" };
+
+    // A prey policy by name, for the -prey option; fleeing preys see as far
+    // as the wolves do
+    static PreyPolicy newPreyPolicy(String name, int visibility) {
+        switch (name) {
+            case "random":
+                return new RandomPrey();
+            case "flee":
+                return new FleeingPrey(visibility);
+            case "flock":
+                return new FlockingPrey(2);
+            default:
+                throw new IllegalArgumentException("unknown prey " + name);
+        }
+    }
+
+    static final String[] GRIDS = { "dense", "packed", "tiled", "sparse", "paged" };
+
+    // A grid by name, for the -grid option: packed and tiled are PackedGrids
+    // laid out row by row and in tiles
+    static WolvesGrid newGrid(String name, int rows, int cols) {
+        switch (name) {
+            case "dense":
+                return new DenseGrid(rows, cols);
+            case "packed":
+                return new PackedGrid(rows, cols);
+            case "tiled":
+                return new PackedGrid(rows, cols, true);
+            case "sparse":
+                return new SparseGrid(rows, cols);
+            case "paged":
+                return new PagedGrid(rows, cols);
+            default:
+                throw new IllegalArgumentException("unknown grid " + name);
+        }
+    }
+
+    // ticks[,history,repeats] of the -stalemate option
+    static long[] stalemate(String option) {
+        String[] parts = option.split(",");
+        if (parts.length != 1 && parts.length != 3)
+            throw new IllegalArgumentException(option);
+        long[] values = new long[3];
+        for (int i = 0; i < parts.length; i++) {
+            values[i] = Long.parseLong(parts[i]);
+            if (values[i] < 0 || (i > 0 && values[i] > Integer.MAX_VALUE))
+                throw new IllegalArgumentException(option);
+        }
+        return values;
+    }
+
+    public static void main(String[] args) {
+        int width = 50;
+        int height = 50;
+        int episodes = 1000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 1;
+        long maxTicks = 100000;
+        String metricsFile = null;
+        long[] stalemate = { 0, 0, 0 };
+        String prey = "random";
+        String grid = "dense";
+        List<String> lineups = List.of("blackboard", "random", "encircle");
+        int wolves = 3;
+
+        //Parameters
+        try {
+            for (int tmp = 0; tmp < args.length; tmp++) {
+                if (args[tmp].compareTo("-width") == 0)
+                    width = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-height") == 0)
+                    height = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-episodes") == 0)
+                    episodes = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-threads") == 0)
+                    threads = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-seed") == 0)
+                    seed = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-maxticks") == 0)
+                    maxTicks = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-metrics") == 0)
+                    metricsFile = args[++tmp];
+                else if (args[tmp].compareTo("-stalemate") == 0)
+                    stalemate = stalemate(args[++tmp]);
+                else if (args[tmp].compareTo("-prey") == 0)
+                    prey = args[++tmp];
+                else if (args[tmp].compareTo("-wolves") == 0)
+                    wolves = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-lineups") == 0)
+                    lineups = List.of(args[++tmp].split(";"));
+                else if (args[tmp].compareTo("-grid") == 0)
+                    grid = args[++tmp];
+                else
+                    throw new Exception();
+            }
+            newPreyPolicy(prey, 5);
+            newGrid(grid, 3, 3);
+            for (String mix : lineups)
+                WolfFactory.parse(mix);
+            if (wolves < 1) throw new Exception();
+            if (width < 3 || height < 3 || episodes < 1 || threads < 1 || maxTicks < 1) throw new Exception();
+        }
+        catch (Exception e) {
+            System.err.println("USAGE: java WolvesTournament [-width w] [-height h] [-episodes n] [-threads t] [-seed s] [-maxticks m] [-metrics file.csv|file.json]");
+            System.err.println("       [-stalemate ticks[,history,repeats]] [-prey " + String.join("|", PREYS) + "] [-grid " + String.join("|", GRIDS) + "]");
+            System.err.println("       [-wolves n] [-lineups mix;mix;..] with mix like blackboard:2,encircle:1 of " + WolfFactory.getNames());
+            System.exit(-1);
+        }
+
+        WolvesTournament tournament = new WolvesTournament(height, width, 10, 5, 1, 2, maxTicks);
+        int numWolves = wolves;
+        for (String mix : lineups) {
+            WolfFactory factory = WolfFactory.parse(mix);
+            tournament.addLineup(mix, () -> factory.lineup(numWolves));
+        }
+        TickMetrics metrics = metricsFile != null ? new TickMetrics() : null;
+        tournament.setMetrics(metrics);
+        tournament.setStalemate(stalemate[0], (int) stalemate[1], (int) stalemate[2]);
+        tournament.setPreyPolicy(newPreyPolicy(prey, 5));
+        tournament.setGrid(grid);
+        tournament.printReport(tournament.run(episodes, seed, threads));
+        if (metrics != null) {
+            try {
+                metrics.dump(metricsFile);
+            } catch (java.io.IOException e) {
+                System.err.println("could not write " + metricsFile + ": " + e.getMessage());
+            }
+        }
+    }
+}
@@ -2,61 +2,147 @@ import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.awt.geom.Rectangle2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.BitSet;
 import javax.swing.JPanel;
+import javax.swing.Timer;
 
 
 @SuppressWarnings("serial")
-public class WolvesUI extends JPanel {
+public class WolvesUI extends JPanel implements WolvesListener {
 
 	private int squaresize;
-	private Wolves game;
-	
+	private WolvesBoard game;
+
+	// The board as last painted: grid lines and agents. Only the cells that
+	// changed since the last frame are redrawn into it.
+	private BufferedImage layer;
+	private BitSet dirtyMarks;   // row * cols + col of every cell waiting to be redrawn
+	private int[] dirty;
+	private int numDirty;
+	private volatile boolean repaintOnTick = true;
+	private Timer frameTimer;
+	private TickMetrics metrics;
+
 	public WolvesUI(Wolves game, int squaresize) {
-		
-		this.game = game;
+		this((WolvesBoard) game, squaresize);
 		game.attach(this);
+	}
+
+	// A window on any board, e.g. an EpisodeReplay; call boardChanged
+	// after every tick of it
+	public WolvesUI(WolvesBoard game, int squaresize) {
+
+		this.game = game;
 		this.squaresize = squaresize;
-		setPreferredSize(new Dimension(game.getNumbCols()*squaresize,game.getNumbRows()*squaresize));
+		// rows run along the x axis, as they always have in this window
+		setPreferredSize(new Dimension(game.getNumbRows()*squaresize,game.getNumbCols()*squaresize));
+
+		int cells = game.getNumbRows()*game.getNumbCols();
+		dirtyMarks = new BitSet(cells);
+		dirty = new int[Math.min(cells, 1024)];
+		layer = new BufferedImage(game.getNumbRows()*squaresize+1, game.getNumbCols()*squaresize+1, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2 = layer.createGraphics();
+		drawgrid(g2);
+		for (int i=0; i<game.getNumbRows(); i++)
+			for (int j=0; j<game.getNumbCols(); j++)
+				drawcell(g2, i, j);
+		g2.dispose();
 	}
 
 	public void paintComponent(Graphics g) {
-		Graphics2D g2 = (Graphics2D)g;
-		
-		//draw background
-		drawgrid(g2);
-		
-		//draw alive cells
-		g2.setColor(Color.DARK_GRAY);
-		for (int i=0; i<game.getNumbCols(); i++)
-			for (int j=0; j<game.getNumbRows(); j++) 
-				if (game.isWolf(i,j)) {
-				    //System.out.println("wolf: " +  game.grid[i][j]);
-				        g2.setColor(Color.DARK_GRAY);
-					g2.fill(new Rectangle2D.Double(i*squaresize+1,j*squaresize+1,squaresize-1,squaresize-1));
-				} else if (game.isPrey(i,j)) {
-					g2.setColor(Color.YELLOW);
-					//System.out.println("Prey: " +  game.grid[i][j]);
-					g2.fill(new Rectangle2D.Double(i*squaresize+1,j*squaresize+1,squaresize-1,squaresize-1));
+		TickMetrics m = metrics;
+		long start = m != null ? System.nanoTime() : 0;
+		//draw the cells that changed, then the whole board in one go
+		synchronized (this) {
+			if (numDirty > 0) {
+				Graphics2D g2 = layer.createGraphics();
+				int cols = game.getNumbCols();
+				for (int k=0; k<numDirty; k++) {
+					dirtyMarks.clear(dirty[k]);
+					drawcell(g2, dirty[k] / cols, dirty[k] % cols);
 				}
-
-		//System.out.println("--------------");
+				numDirty = 0;
+				g2.dispose();
+			}
+		}
+		g.drawImage(layer, 0, 0, null);
+		if (m != null)
+			m.paint(System.nanoTime() - start);
 	}
 
 	public void drawgrid(Graphics2D g2) {
 		//fillbackground
 		g2.setColor(Color.LIGHT_GRAY);
-		g2.fill(getVisibleRect());
+		g2.fillRect(0, 0, layer.getWidth(), layer.getHeight());
 		//drawgrid
 		g2.setColor(Color.GRAY);
 		for (int i=0;i<=game.getNumbCols();i++)
-			g2.drawLine(i*squaresize, 0, i*squaresize,game.getNumbRows()*squaresize);
+			g2.drawLine(0, i*squaresize, game.getNumbRows()*squaresize, i*squaresize);
 		for (int i=0;i<=game.getNumbRows();i++)
-			g2.drawLine(0,i*squaresize,game.getNumbCols()*squaresize,i*squaresize);
+			g2.drawLine(i*squaresize, 0, i*squaresize, game.getNumbCols()*squaresize);
+	}
+
+	// Paints the inside of one cell: background, wolf or prey
+	private void drawcell(Graphics2D g2, int i, int j) {
+		if (game.isWolf(i,j))
+			g2.setColor(Color.DARK_GRAY);
+		else if (game.isPrey(i,j))
+			g2.setColor(Color.YELLOW);
+		else
+			g2.setColor(Color.LIGHT_GRAY);
+		g2.fillRect(i*squaresize+1,j*squaresize+1,squaresize-1,squaresize-1);
 	}
 
 	public void update() {
 		repaint();
 	}
-	
+
+	// Repaints at the given rate from a Swing timer instead of after every
+	// tick, so the engine can run much faster than the screen refreshes.
+	// Every frame shows the latest state; 0 goes back to repainting per tick.
+	public void setFrameRate(int fps) {
+		if (frameTimer != null)
+			frameTimer.stop();
+		frameTimer = null;
+		repaintOnTick = fps <= 0;
+		if (fps > 0) {
+			frameTimer = new Timer(1000 / fps, e -> repaint());
+			frameTimer.start();
+		}
+	}
+
+	// Times every paint into the PAINT phase of the given metrics, null to stop
+	public void setMetrics(TickMetrics metrics) {
+		this.metrics = metrics;
+	}
+
+	@Override
+	public void tickCompleted(Wolves game) {
+		boardChanged(game.getDelta());
+	}
+
+	// Marks the cells the agents of the last tick left and entered
+	public void boardChanged(TickDelta delta) {
+		synchronized (this) {
+			for (int k=0; k<delta.numMoves; k++) {
+				markDirty(delta.fromRow[k], delta.fromCol[k]);
+				markDirty(delta.toRow[k], delta.toCol[k]);
+			}
+		}
+		if (repaintOnTick)
+			update();
+	}
+
+	private void markDirty(int i, int j) {
+		int cell = i*game.getNumbCols()+j;
+		if (dirtyMarks.get(cell))
+			return;
+		dirtyMarks.set(cell);
+		if (numDirty == dirty.length)
+			dirty = Arrays.copyOf(dirty, Math.min(dirty.length*2, game.getNumbRows()*game.getNumbCols()));
+		dirty[numDirty++] = cell;
+	}
+
 }
@@ -0,0 +1,478 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Many Wolves worlds stepped in lockstep, for training wolf policies the way
+// reinforcement learning libraries expect: reset(seeds) starts an episode in
+// every world, step() applies one action per wolf and world, ticks them all,
+// and leaves the observations, rewards and episode ends of every world in
+// flat buffers. The actions are the moves of the wolves of these worlds (see
+// Wolves.tick(int[])); ticked any other way, the wolves stand still.
+//
+// All buffers are views of one ByteBuffer in native byte order, allocated
+// once, and a world that starts a new episode is reset in place, so stepping
+// allocates nothing once every world is built. With a file, e.g. under /dev/shm, the
+// buffer is mapped from it, and a trainer in another process can map the
+// same file and read the results in place. The layout, in ints or floats
+// of 4 bytes:
+//
+//     header        16 ints: MAGIC, numEnvs, numWolves, obsSize, steps done,
+//                   the rest reserved
+//     actions       numEnvs * numWolves ints, written by the trainer
+//     observations  numEnvs * numWolves * obsSize ints
+//     rewards       numEnvs * numWolves floats
+//     dones         numEnvs ints
+//
+// An action is 0 to stand still, or 1 + d to step in direction d of
+// PreyStrips.DR/DC: 1 up-left, 2 up, 3 up-right, 4 left, 5 right,
+// 6 down-left, 7 down, 8 down-right. The observation of a wolf is what
+// fillView gives: the number of wolves and of preys it sees, then the
+// offsets (row, col) of the other wolves, numWolves - 1 pairs, then those
+// of the preys, numPreys pairs, in the form and order of getWolfViewW and
+// getWolfViewP. Pairs beyond what it sees are 0. It is taken after the
+// tick, so the preys move once more before the next actions apply.
+//
+// The reward of every wolf of a world is the number of preys captured in
+// that world during the step. A done is 0 while the episode runs, and then
+// 1 if the wolves won, 2 for a stalemate (see setStalemate) and 3 if it
+// reached maxTicks. A world that is done starts a new episode on the next
+// step instead of ticking, with reward 0 and the first observation of the
+// new episode; its seed follows from the one given to reset.
+public class WolvesVecEnv {
+
+    public static final int MAGIC = 0x574F4C56;   // "WOLV"
+    public static final int HEADER = 16;
+    public static final int ACTIONS = 9;
+
+    public static final int RUNNING = 0;
+    public static final int WON = 1;
+    public static final int STALEMATE = 2;
+    public static final int TRUNCATED = 3;
+
+    private final int numEnvs;
+    private final int rows, cols, numWolves, numPreys, visibility, minCaptured, min_surround;
+    private final long maxTicks;
+    private final int obsSize;
+
+    private final ByteBuffer buffer;
+    private final IntBuffer header;
+    private final IntBuffer actions;
+    private final IntBuffer observations;
+    private final FloatBuffer rewards;
+    private final IntBuffer dones;
+
+    private final Wolves[] worlds;
+    private final long[] seeds;
+    private final int[] episodes;
+    private final boolean[] done;
+    private final int[][] moves;    // per world, for Wolves.tick(int[])
+    private final WolfView[] views;
+    private final int[][] scratch;  // per world, its actions and then its observations, copied in bulk
+    private final Wolf[] lineup;    // shared by all worlds, as these wolves keep no state
+    private long steps;
+    private PreyPolicy preyPolicy = new RandomPrey();
+    private long stalemateTicks;
+    private int stalemateHistory, stalemateRepeats;
+
+    // Stepping several worlds at once: the chunks are built once and reused
+    private final ForkJoinPool pool;
+    private final Chunk[] chunks;
+    private final Batch batch = new Batch();
+
+    // Environments with their buffers in memory of their own
+    public WolvesVecEnv(int numEnvs, int rows, int cols, int numWolves, int numPreys, int visibility, int minCaptured,
+                        int min_surround, long maxTicks, int threads) {
+        this(numEnvs, rows, cols, numWolves, numPreys, visibility, minCaptured, min_surround, maxTicks, threads,
+                ByteBuffer.allocateDirect(bytes(numEnvs, numWolves, numPreys)));
+    }
+
+    // Environments with their buffers in the given file, created or grown
+    // as needed, for a trainer in another process to map as well
+    public WolvesVecEnv(int numEnvs, int rows, int cols, int numWolves, int numPreys, int visibility, int minCaptured,
+                        int min_surround, long maxTicks, int threads, Path file) throws IOException {
+        this(numEnvs, rows, cols, numWolves, numPreys, visibility, minCaptured, min_surround, maxTicks, threads,
+                map(file, bytes(numEnvs, numWolves, numPreys)));
+    }
+
+    private WolvesVecEnv(int numEnvs, int rows, int cols, int numWolves, int numPreys, int visibility, int minCaptured,
+                         int min_surround, long maxTicks, int threads, ByteBuffer buffer) {
+        if (numEnvs < 1 || numWolves < 1 || numPreys < 1 || threads < 1 || maxTicks < 1)
+            throw new IllegalArgumentException("needs at least one world, wolf, prey, thread and tick");
+        this.numEnvs = numEnvs;
+        this.rows = rows;
+        this.cols = cols;
+        this.numWolves = numWolves;
+        this.numPreys = numPreys;
+        this.visibility = visibility;
+        this.minCaptured = minCaptured;
+        this.min_surround = min_surround;
+        this.maxTicks = maxTicks;
+        obsSize = obsSize(numWolves, numPreys);
+
+        this.buffer = buffer.order(ByteOrder.nativeOrder());
+        int agents = numEnvs * numWolves;
+        header = slice(0, HEADER).asIntBuffer();
+        actions = slice(HEADER, agents).asIntBuffer();
+        observations = slice(HEADER + agents, agents * obsSize).asIntBuffer();
+        rewards = slice(HEADER + agents + agents * obsSize, agents).asFloatBuffer();
+        dones = slice(HEADER + 2 * agents + agents * obsSize, numEnvs).asIntBuffer();
+        header.put(0, MAGIC);
+        header.put(1, numEnvs);
+        header.put(2, numWolves);
+        header.put(3, obsSize);
+        header.put(4, 0);
+
+        worlds = new Wolves[numEnvs];
+        seeds = new long[numEnvs];
+        episodes = new int[numEnvs];
+        done = new boolean[numEnvs];
+        moves = new int[numEnvs][2 * numWolves];
+        views = new WolfView[numEnvs];
+        scratch = new int[numEnvs][];
+        for (int e = 0; e < numEnvs; e++) {
+            views[e] = new WolfView(numWolves - 1, numPreys);
+            scratch[e] = new int[numWolves * obsSize];
+        }
+        lineup = new Wolf[numWolves];
+        for (int i = 0; i < numWolves; i++)
+            lineup[i] = new Learner();
+
+        int numChunks = threads == 1 ? 0 : Math.min(numEnvs, 4 * threads);
+        pool = numChunks > 0 ? new ForkJoinPool(threads) : null;
+        chunks = new Chunk[numChunks];
+        for (int c = 0; c < numChunks; c++)
+            chunks[c] = new Chunk((int) ((long) numEnvs * c / numChunks), (int) ((long) numEnvs * (c + 1) / numChunks));
+    }
+
+    // Ints of one observation
+    public static int obsSize(int numWolves, int numPreys) {
+        return 2 + 2 * (numWolves - 1) + 2 * numPreys;
+    }
+
+    // Bytes of the buffer, or of the file, for the given sizes
+    public static int bytes(int numEnvs, int numWolves, int numPreys) {
+        long agents = (long) numEnvs * numWolves;
+        long size = 4 * (HEADER + agents * (2 + obsSize(numWolves, numPreys)) + numEnvs);
+        if (size > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("the buffers would take " + size + " bytes");
+        return (int) size;
+    }
+
+    private static ByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    private ByteBuffer slice(int fromInt, int ints) {
+        return buffer.slice(4 * fromInt, 4 * ints).order(ByteOrder.nativeOrder());
+    }
+
+    // How the preys of new episodes move; stateless policies only, as
+    // worlds share it
+    public void setPreyPolicy(PreyPolicy policy) {
+        this.preyPolicy = policy;
+    }
+
+    // Calls episodes of the following resets off as in Wolves.setStalemate
+    public void setStalemate(long noCaptureTicks, int history, int maxRepeats) {
+        this.stalemateTicks = noCaptureTicks;
+        this.stalemateHistory = history;
+        this.stalemateRepeats = maxRepeats;
+    }
+
+    // Starts a new episode in every world, world e with seeds[e], and writes
+    // the first observations
+    public void reset(long[] seeds) {
+        if (seeds.length != numEnvs)
+            throw new IllegalArgumentException(seeds.length + " seeds for " + numEnvs + " worlds");
+        System.arraycopy(seeds, 0, this.seeds, 0, numEnvs);
+        for (int e = 0; e < numEnvs; e++) {
+            episodes[e] = 0;
+            done[e] = true;
+        }
+        run();
+        steps = 0;
+        header.put(4, 0);
+    }
+
+    // Applies the actions in the action buffer, ticks every world once and
+    // writes the observations, rewards and dones
+    public void step() {
+        if (worlds[0] == null)
+            throw new IllegalStateException("reset first");
+        run();
+        steps++;
+        header.put(4, (int) steps);
+    }
+
+    // Copies the actions in, then steps
+    public void step(int[] actions) {
+        if (actions.length != numEnvs * numWolves)
+            throw new IllegalArgumentException(actions.length + " actions for " + numEnvs * numWolves + " wolves");
+        this.actions.put(0, actions);
+        step();
+    }
+
+    private void run() {
+        if (pool == null) {
+            step(0, numEnvs);
+        } else {
+            batch.reinitialize();
+            pool.invoke(batch);
+        }
+    }
+
+    private void step(int from, int to) {
+        for (int e = from; e < to; e++) {
+            if (done[e]) {
+                start(e);
+                continue;
+            }
+            Wolves world = worlds[e];
+            int[] m = moves[e];
+            int[] a = scratch[e];
+            int base = e * numWolves;
+            actions.get(base, a, 0, numWolves);
+            for (int i = 0; i < numWolves; i++) {
+                if (a[i] < 0 || a[i] >= ACTIONS)
+                    throw new IllegalArgumentException("action " + a[i] + " of wolf " + i + " in world " + e);
+                m[2 * i] = a[i] == 0 ? 0 : PreyStrips.DR[a[i] - 1];
+                m[2 * i + 1] = a[i] == 0 ? 0 : PreyStrips.DC[a[i] - 1];
+            }
+            world.tick(m);
+            float captures = world.getDelta().numCaptures;
+            for (int i = 0; i < numWolves; i++)
+                rewards.put(base + i, captures);
+            int status = world.isGameOver() ? (world.isStalemate() ? STALEMATE : WON)
+                       : world.getTickCount() >= maxTicks ? TRUNCATED : RUNNING;
+            done[e] = status != RUNNING;
+            dones.put(e, status);
+            observe(e);
+        }
+    }
+
+    // A new episode in world e: the first one gets the seed given to reset,
+    // the next ones seeds that follow from it. The world is built once and
+    // then reset in place.
+    private void start(int e) {
+        long seed = episodes[e] == 0 ? seeds[e] : WolvesRandom.seed(seeds[e], episodes[e]);
+        episodes[e]++;
+        Wolves world = worlds[e];
+        if (world == null)
+            worlds[e] = world = new Wolves(rows, cols, lineup, numPreys, visibility, minCaptured, min_surround, seed);
+        else
+            world.reset(seed);
+        world.setPreyPolicy(preyPolicy);
+        world.setStalemate(stalemateTicks, stalemateHistory, stalemateRepeats);
+        done[e] = false;
+        int base = e * numWolves;
+        for (int i = 0; i < numWolves; i++)
+            rewards.put(base + i, 0);
+        dones.put(e, RUNNING);
+        observe(e);
+    }
+
+    private void observe(int e) {
+        Wolves world = worlds[e];
+        WolfView view = views[e];
+        int[] obs = scratch[e];
+        int preys = 2 + 2 * (numWolves - 1);
+        for (int i = 0, at = 0; i < numWolves; i++, at += obsSize) {
+            world.fillView(i, view);
+            obs[at] = view.numWolves;
+            obs[at + 1] = view.numPreys;
+            for (int k = 0; k < numWolves - 1; k++) {
+                boolean seen = k < view.numWolves;
+                obs[at + 2 + 2 * k] = seen ? view.wolfRows[k] : 0;
+                obs[at + 3 + 2 * k] = seen ? view.wolfCols[k] : 0;
+            }
+            for (int k = 0; k < numPreys; k++) {
+                boolean seen = k < view.numPreys;
+                obs[at + preys + 2 * k] = seen ? view.preyRows[k] : 0;
+                obs[at + preys + 2 * k + 1] = seen ? view.preyCols[k] : 0;
+            }
+        }
+        observations.put(e * numWolves * obsSize, obs, 0, numWolves * obsSize);
+    }
+
+    public int getNumbEnvs() {
+        return numEnvs;
+    }
+
+    public int getNumbWolves() {
+        return numWolves;
+    }
+
+    public int getObsSize() {
+        return obsSize;
+    }
+
+    public long getSteps() {
+        return steps;
+    }
+
+    // The world e plays in right now, e.g. to watch it through a WolvesFeed
+    public Wolves getWorld(int e) {
+        return worlds[e];
+    }
+
+    // The whole buffer, laid out as described above
+    public ByteBuffer getBuffer() {
+        return buffer.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    // Action of wolf i of world e at e * numWolves + i
+    public IntBuffer getActions() {
+        return actions;
+    }
+
+    // Observation of wolf i of world e from (e * numWolves + i) * obsSize on
+    public IntBuffer getObservations() {
+        return observations;
+    }
+
+    public FloatBuffer getRewards() {
+        return rewards;
+    }
+
+    public IntBuffer getDones() {
+        return dones;
+    }
+
+    // Stops the threads, if any
+    public void close() {
+        if (pool != null)
+            pool.shutdown();
+    }
+
+    // The wolves of the worlds, whose moves come from the actions. Ticked
+    // outside step, e.g. by a WolvesScheduler, they stand still
+    static class Learner implements Wolf, BufferedWolf {
+        @Override
+        public int[] moveAll(List<int[]> wolvesSight, List<int[]> preysSight) {
+            return new int[2];
+        }
+
+        @Override
+        public int moveLim(List<int[]> wolvesSight, List<int[]> preysSight) {
+            return 0;
+        }
+
+        @Override
+        public void moveAll(WolfView view, int[] moves, int slot) {
+            moves[slot] = moves[slot + 1] = 0;
+        }
+
+        @Override
+        public int moveLim(WolfView view) {
+            return 0;
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class Chunk extends RecursiveAction {
+        private final int from, to;
+
+        Chunk(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            step(from, to);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private class Batch extends RecursiveAction {
+        @Override
+        protected void compute() {
+            for (Chunk c : chunks)
+                c.reinitialize();
+            invokeAll(chunks);
+        }
+    }
+
+    // Steps random actions as fast as it can and reports the rate, e.g. to
+    // size numEnvs and threads for a trainer
+    public static void main(String[] args) throws IOException {
+        int envs = 1024;
+        int size = 20;
+        int wolves = 4;
+        int preys = 10;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long maxTicks = 500;
+        int seconds = 5;
+        String file = null;
+
+        //Parameters
+        try {
+            for (int tmp = 0; tmp < args.length; tmp++) {
+                if (args[tmp].compareTo("-envs") == 0)
+                    envs = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-size") == 0)
+                    size = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-wolves") == 0)
+                    wolves = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-preys") == 0)
+                    preys = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-threads") == 0)
+                    threads = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-maxticks") == 0)
+                    maxTicks = Long.parseLong(args[++tmp]);
+                else if (args[tmp].compareTo("-seconds") == 0)
+                    seconds = Integer.parseInt(args[++tmp]);
+                else if (args[tmp].compareTo("-shm") == 0)
+                    file = args[++tmp];
+                else
+                    throw new Exception();
+            }
+            if (envs < 1 || size < 3 || wolves < 1 || preys < 1 || threads < 1 || maxTicks < 1 || seconds < 1) throw new Exception();
+        }
+        catch (Exception e) {
+            System.err.println("USAGE: java WolvesVecEnv [-envs n] [-size n] [-wolves n] [-preys n] [-threads t] [-maxticks m] [-seconds s] [-shm /dev/shm/file]");
+            System.exit(-1);
+        }
+
+        WolvesVecEnv env = file != null
+                ? new WolvesVecEnv(envs, size, size, wolves, preys, 5, 1, 2, maxTicks, threads, Path.of(file))
+                : new WolvesVecEnv(envs, size, size, wolves, preys, 5, 1, 2, maxTicks, threads);
+        long[] seeds = new long[envs];
+        for (int e = 0; e < envs; e++)
+            seeds[e] = WolvesTournament.seedFor(1, 0, e);
+        env.reset(seeds);
+        WolvesRandom random = new WolvesRandom(1);
+        IntBuffer actions = env.getActions();
+        FloatBuffer rewards = env.getRewards();
+        IntBuffer dones = env.getDones();
+        long episodes = 0, captures = 0, steps = 0;
+        long start = System.nanoTime(), end = start + seconds * 1000000000L;
+        while (System.nanoTime() < end) {
+            for (int i = 0; i < envs * wolves; i++)
+                actions.put(i, random.nextInt(ACTIONS));
+            env.step();
+            steps++;
+            for (int e = 0; e < envs; e++) {
+                captures += (long) rewards.get(e * wolves);
+                if (dones.get(e) != RUNNING)
+                    episodes++;
+            }
+        }
+        double ms = (System.nanoTime() - start) / 1e6;
+        System.out.printf(Locale.ROOT, "%d steps of %d worlds in %.0f ms: %.0f world steps/ms, %d episodes, %d captures%n",
+                steps, envs, ms, steps * envs / ms, episodes, captures);
+        env.close();
+    }
+}